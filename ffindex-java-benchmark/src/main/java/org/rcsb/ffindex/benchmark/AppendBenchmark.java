@@ -0,0 +1,87 @@
+package org.rcsb.ffindex.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.rcsb.ffindex.impl.MutableEntries;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Tracks the cost of registering files in {@link MutableEntries}, which is what every write to an appendable bundle
+ * does. Run with the GC profiler: {@code gc.alloc.rate.norm} reports the bytes allocated per append, resident memory
+ * per entry is printed after each iteration.
+ */
+public class AppendBenchmark {
+    private static final int ENTRY_COUNT = 1_000_000;
+
+    @State(Scope.Thread)
+    public static class AppendState {
+        String[] filenames;
+        MutableEntries entries;
+
+        @Setup(Level.Trial)
+        public void setupTrial() {
+            filenames = new String[ENTRY_COUNT];
+            for (int i = 0; i < ENTRY_COUNT; i++) {
+                filenames[i] = String.format("%04x/%d.bcif.gz", i & 0xffff, i);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void teardownIteration() {
+            long withEntries = usedHeap();
+            entries = null;
+            long withoutEntries = usedHeap();
+            System.out.printf("%n%.1f bytes of heap per entry%n", (withEntries - withoutEntries) / (double) ENTRY_COUNT);
+        }
+
+        private static long usedHeap() {
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRY_COUNT)
+    public MutableEntries append(AppendState state) throws IOException {
+        MutableEntries entries = new MutableEntries();
+        long offset = 0;
+        for (String filename : state.filenames) {
+            entries.addFile(filename, offset, 4096);
+            offset += 4096;
+        }
+        state.entries = entries;
+        return entries;
+    }
+
+    /**
+     * Entry point.
+     * @param args nothing
+     * @throws RunnerException benchmark failed
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AppendBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .mode(Mode.AverageTime)
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .build();
+        new Runner(options).run();
+    }
+}
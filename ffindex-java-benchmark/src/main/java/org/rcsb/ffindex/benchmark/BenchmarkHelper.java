@@ -41,6 +41,11 @@ class BenchmarkHelper {
     }
 
     static int hashContents(ByteBuffer byteBuffer) {
-        return Arrays.hashCode(byteBuffer.array());
+        // mapped buffers have no accessible array
+        int hash = 1;
+        for (int i = byteBuffer.position(); i < byteBuffer.limit(); i++) {
+            hash = 31 * hash + byteBuffer.get(i);
+        }
+        return hash;
     }
 }
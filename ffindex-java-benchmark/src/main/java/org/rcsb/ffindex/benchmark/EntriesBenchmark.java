@@ -0,0 +1,163 @@
+package org.rcsb.ffindex.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.rcsb.ffindex.Entries;
+import org.rcsb.ffindex.FileBundle;
+import org.rcsb.ffindex.IndexType;
+import org.rcsb.ffindex.impl.BinaryIndex;
+import org.rcsb.ffindex.impl.CompactEntries;
+import org.rcsb.ffindex.impl.FilteredEntries;
+import org.rcsb.ffindex.impl.ImmutableEntries;
+import org.rcsb.ffindex.impl.PerfectHashEntries;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Compares heap usage and lookup latency of the different {@link Entries} implementations on a synthetic index. Set
+ * {@code filterFalsePositiveProbability} to guard lookups by a Bloom filter.
+ */
+public class EntriesBenchmark {
+    @State(Scope.Benchmark)
+    public static class EntriesState {
+        private static final int LOOKUPS = 1000;
+
+        @Param({ "1000000" })
+        int entryCount;
+        @Param({ "HASH_MAP", "COMPACT", "COMPACT_OFF_HEAP", "BINARY", "PERFECT_HASH" })
+        IndexType indexType;
+        @Param({ "0" })
+        double filterFalsePositiveProbability;
+
+        Path indexPath;
+        Entries entries;
+        String[] present;
+        String[] absent;
+        String[] directories;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            indexPath = Files.createTempFile("entries-benchmark", ".ffindex");
+            try (BufferedWriter writer = Files.newBufferedWriter(indexPath)) {
+                long offset = 0;
+                for (int i = 0; i < entryCount; i++) {
+                    int length = 1000 + i % 5000;
+                    writer.write(filename(i) + "\t" + offset + "\t" + length + "\n");
+                    offset += length;
+                }
+            }
+
+            Random random = new Random(0);
+            present = new String[LOOKUPS];
+            absent = new String[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                present[i] = filename(random.nextInt(entryCount));
+                absent[i] = filename(entryCount + random.nextInt(entryCount));
+            }
+            directories = new String[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                directories[i] = String.format("%04x/", random.nextInt(0x10000));
+            }
+
+            long before = usedHeap();
+            entries = read(indexPath, indexType);
+            if (filterFalsePositiveProbability > 0) {
+                entries = FilteredEntries.of(entries, filterFalsePositiveProbability, null);
+            }
+            long after = usedHeap();
+            System.out.printf("%n%s: %.1f bytes of heap per entry%n", indexType, (after - before) / (double) entryCount);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws IOException {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(indexPath.resolveSibling(indexPath.getFileName() + FileBundle.BINARY_INDEX_EXT));
+            Files.deleteIfExists(indexPath.resolveSibling(indexPath.getFileName() + FileBundle.PERFECT_HASH_EXT));
+        }
+
+        private static String filename(int i) {
+            return String.format("%04x/%d.bcif.gz", i & 0xffff, i);
+        }
+
+        private static Entries read(Path indexPath, IndexType indexType) throws IOException {
+            switch (indexType) {
+                case COMPACT:
+                    return CompactEntries.of(indexPath, false);
+                case COMPACT_OFF_HEAP:
+                    return CompactEntries.of(indexPath, true);
+                case BINARY:
+                    Path binaryIndexPath = indexPath.resolveSibling(indexPath.getFileName() + FileBundle.BINARY_INDEX_EXT);
+                    BinaryIndex.write(indexPath, binaryIndexPath);
+                    return BinaryIndex.load(indexPath, binaryIndexPath);
+                case PERFECT_HASH:
+                    Path perfectHashPath = indexPath.resolveSibling(indexPath.getFileName() + FileBundle.PERFECT_HASH_EXT);
+                    PerfectHashEntries.write(indexPath, perfectHashPath);
+                    return PerfectHashEntries.of(indexPath, perfectHashPath);
+                default:
+                    return ImmutableEntries.of(indexPath);
+            }
+        }
+
+        private static long usedHeap() {
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    @Benchmark
+    public void lookupPresent(Blackhole blackhole, EntriesState state) {
+        for (String filename : state.present) {
+            blackhole.consume(state.entries.getOffset(state.entries.getIndex(filename)));
+        }
+    }
+
+    @Benchmark
+    public void lookupAbsent(Blackhole blackhole, EntriesState state) {
+        for (String filename : state.absent) {
+            blackhole.consume(state.entries.getIndex(filename));
+        }
+    }
+
+    @Benchmark
+    public void listDirectory(Blackhole blackhole, EntriesState state) {
+        // only a few directories per invocation, a full scan takes milliseconds
+        for (int i = 0; i < 10; i++) {
+            blackhole.consume(state.entries.filenames(state.directories[i]).collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Entry point.
+     * @param args nothing
+     * @throws RunnerException benchmark failed
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EntriesBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .mode(Mode.AverageTime)
+                .forks(1)
+                .build();
+        new Runner(options).run();
+    }
+}
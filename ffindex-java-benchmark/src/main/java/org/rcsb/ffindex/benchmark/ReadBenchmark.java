@@ -9,6 +9,7 @@ import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.TimeValue;
 import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.IndexCache;
 import org.rcsb.ffindex.ReadableFileBundle;
 
 import java.io.IOException;
@@ -21,6 +22,7 @@ import java.nio.file.Paths;
  */
 public class ReadBenchmark {
     private static final ReadableFileBundle fileBundle;
+    private static final IndexCache indexCache = new IndexCache(1L << 30);
 
     static {
         // this is pretty dirty...
@@ -47,6 +49,15 @@ public class ReadBenchmark {
         }
     }
 
+    @Benchmark
+    public void readFFindexCached(Blackhole blackhole, ReadState state) throws IOException {
+        try (ReadableFileBundle readableFileBundle = FileBundleIO.openBundle(state.dataIn, state.indexIn).withIndexCache(indexCache).inReadOnlyMode()) {
+            for (String filename : state.filenames) {
+                blackhole.consume(BenchmarkHelper.hashContents(readableFileBundle.readFile(filename)));
+            }
+        }
+    }
+
     @Benchmark
     public void readFFindexInitialized(Blackhole blackhole, ReadState state) throws IOException {
         for (String filename : state.filenames) {
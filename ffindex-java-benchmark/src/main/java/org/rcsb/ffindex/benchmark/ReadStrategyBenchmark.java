@@ -0,0 +1,238 @@
+package org.rcsb.ffindex.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.rcsb.ffindex.ContentCache;
+import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.ReadStrategy;
+import org.rcsb.ffindex.ReadableFileBundle;
+import org.rcsb.ffindex.WritableFileBundle;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the {@link ReadStrategy} options on synthetic bundles of files of different sizes. Bundles hold up to 256 MB,
+ * so they are read from the page cache. Set {@code contentCacheBytes} to serve reads by a {@link ContentCache}.
+ */
+public class ReadStrategyBenchmark {
+    private static final int HEADER_LENGTH = 512;
+
+    @State(Scope.Benchmark)
+    public static class BundleState {
+        private static final int READS = 1000;
+        private static final int MAX_BYTES = 256 << 20;
+
+        @Param({ "1000", "10000", "100000" })
+        int fileSize;
+        @Param({ "MAP_PER_READ", "MAPPED_SEGMENTS", "POSITIONAL_READ" })
+        ReadStrategy readStrategy;
+        @Param({ "0" })
+        long contentCacheBytes;
+
+        Path dataPath;
+        Path indexPath;
+        ReadableFileBundle fileBundle;
+        String[] filenames;
+        String[] skewedFilenames;
+        List<String> batch;
+        ByteBuffer target;
+        SocketChannel sink;
+        ServerSocketChannel server;
+        Thread drain;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dataPath = Files.createTempFile("read-strategy-benchmark", ".data");
+            indexPath = Files.createTempFile("read-strategy-benchmark", ".ffindex");
+            Files.delete(dataPath);
+            Files.delete(indexPath);
+            Random random = new Random(0);
+            int fileCount = Math.min(20000, MAX_BYTES / fileSize);
+            try (WritableFileBundle writableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inWriteOnlyMode()) {
+                for (int i = 0; i < fileCount; i++) {
+                    byte[] content = new byte[fileSize / 2 + random.nextInt(fileSize)];
+                    random.nextBytes(content);
+                    writableFileBundle.writeFile(i + ".bcif", ByteBuffer.wrap(content));
+                }
+            }
+
+            filenames = new String[READS];
+            for (int i = 0; i < READS; i++) {
+                filenames[i] = random.nextInt(fileCount) + ".bcif";
+            }
+            // 80% of reads hit 1% of the files
+            skewedFilenames = new String[READS];
+            for (int i = 0; i < READS; i++) {
+                int bound = random.nextInt(5) < 4 ? Math.max(1, fileCount / 100) : fileCount;
+                skewedFilenames[i] = random.nextInt(bound) + ".bcif";
+            }
+            batch = Arrays.asList(filenames);
+            openSink();
+            target = ByteBuffer.allocateDirect(fileSize * 3 / 2);
+            FileBundleIO.ModeStep modeStep = FileBundleIO.openBundle(dataPath, indexPath).withReadStrategy(readStrategy);
+            if (contentCacheBytes > 0) {
+                modeStep.withContentCache(new ContentCache(contentCacheBytes));
+            }
+            fileBundle = modeStep.inReadOnlyMode();
+        }
+
+        /**
+         * Connect to a local socket whose other end discards everything, like a client would.
+         */
+        private void openSink() throws IOException {
+            server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            sink = SocketChannel.open(server.getLocalAddress());
+            SocketChannel client = server.accept();
+            drain = new Thread(() -> {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+                try (client) {
+                    while (client.read(buffer.clear()) >= 0) {
+                        // discard
+                    }
+                } catch (IOException e) {
+                    // sink closed
+                }
+            });
+            drain.setDaemon(true);
+            drain.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws IOException {
+            fileBundle.close();
+            sink.close();
+            server.close();
+            Files.deleteIfExists(dataPath);
+            Files.deleteIfExists(indexPath);
+        }
+    }
+
+    @Benchmark
+    public void readFile(Blackhole blackhole, BundleState state) throws IOException {
+        for (String filename : state.filenames) {
+            ByteBuffer content = state.fileBundle.readFile(filename);
+            blackhole.consume(touchContents(content));
+            state.fileBundle.releaseBuffer(content);
+        }
+    }
+
+    @Benchmark
+    public void readSkewed(Blackhole blackhole, BundleState state) throws IOException {
+        for (String filename : state.skewedFilenames) {
+            ByteBuffer content = state.fileBundle.readFile(filename);
+            blackhole.consume(touchContents(content));
+            state.fileBundle.releaseBuffer(content);
+        }
+    }
+
+    @Benchmark
+    public void readFileInto(Blackhole blackhole, BundleState state) throws IOException {
+        for (String filename : state.filenames) {
+            state.target.clear();
+            state.fileBundle.readFile(filename, state.target);
+            blackhole.consume(touchContents(state.target.flip()));
+        }
+    }
+
+    @Benchmark
+    public void readHeader(Blackhole blackhole, BundleState state) throws IOException {
+        for (String filename : state.filenames) {
+            ByteBuffer header = state.fileBundle.readFileRange(filename, 0, HEADER_LENGTH);
+            blackhole.consume(touchContents(header));
+            state.fileBundle.releaseBuffer(header);
+        }
+    }
+
+    @Benchmark
+    public void readFiles(Blackhole blackhole, BundleState state) throws IOException {
+        state.fileBundle.readFiles(state.batch, (filename, content) -> blackhole.consume(touchContents(content)));
+    }
+
+    @Benchmark
+    public void readAllFiles(Blackhole blackhole, BundleState state) throws IOException {
+        for (String filename : (Iterable<String>) state.fileBundle.filenames()::iterator) {
+            ByteBuffer content = state.fileBundle.readFile(filename);
+            blackhole.consume(touchContents(content));
+            state.fileBundle.releaseBuffer(content);
+        }
+    }
+
+    @Benchmark
+    public void forEachFile(Blackhole blackhole, BundleState state) throws IOException {
+        state.fileBundle.forEachFile((filename, content) -> blackhole.consume(touchContents(content)));
+    }
+
+    @Benchmark
+    public long streamEntries(BundleState state) {
+        return state.fileBundle.entries().mapToLong(entry -> BenchmarkHelper.hashContents(entry.getContent())).sum();
+    }
+
+    @Benchmark
+    public long streamEntriesParallel(BundleState state) {
+        return state.fileBundle.entries().parallel().mapToLong(entry -> BenchmarkHelper.hashContents(entry.getContent())).sum();
+    }
+
+    @Benchmark
+    public void copyFile(BundleState state) throws IOException {
+        for (String filename : state.filenames) {
+            ByteBuffer content = state.fileBundle.readFile(filename);
+            while (content.hasRemaining()) {
+                state.sink.write(content);
+            }
+            state.fileBundle.releaseBuffer(content);
+        }
+    }
+
+    @Benchmark
+    public void transferFile(BundleState state) throws IOException {
+        for (String filename : state.filenames) {
+            state.fileBundle.transferFile(filename, state.sink);
+        }
+    }
+
+    private static long touchContents(ByteBuffer content) {
+        // one byte per cache line faults in all pages without letting the cost of hashing dominate
+        long sum = 0;
+        for (int i = content.position(); i < content.limit(); i += 64) {
+            sum += content.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Entry point.
+     * @param args nothing
+     * @throws RunnerException benchmark failed
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ReadStrategyBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .mode(Mode.AverageTime)
+                .forks(1)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -8,6 +8,7 @@ import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.TimeValue;
+import org.rcsb.ffindex.BundleOptions;
 import org.rcsb.ffindex.FileBundleIO;
 import org.rcsb.ffindex.WritableFileBundle;
 
@@ -56,6 +57,32 @@ public class WriteBenchmark {
         }
     }
 
+    @Benchmark
+    public void writeFFindexConcurrent(Blackhole blackhole, WriteState state) throws IOException {
+        try (WritableFileBundle fileBundle = FileBundleIO.openBundle(state.dataOut, state.indexOut).inConcurrentWriteMode()) {
+            blackhole.consume(addDirectory(fileBundle, state.sourceDirectory, true));
+        }
+    }
+
+    @Benchmark
+    public void writeFFindexSharded(Blackhole blackhole, WriteState state) throws IOException {
+        try (WritableFileBundle fileBundle = FileBundleIO.openBundle(state.dataOut, state.indexOut).inShardedWriteMode()) {
+            blackhole.consume(addDirectory(fileBundle, state.sourceDirectory, true));
+        }
+    }
+
+    @Benchmark
+    public void writeFFindexAsync(Blackhole blackhole, WriteState state) throws IOException {
+        try (WritableFileBundle fileBundle = FileBundleIO.openBundle(state.dataOut, state.indexOut).inAsyncWriteMode(1024)) {
+            blackhole.consume(addDirectory(fileBundle, state.sourceDirectory, true));
+        }
+    }
+
+    @Benchmark
+    public void bundleDirectory(Blackhole blackhole, WriteState state) throws IOException {
+        blackhole.consume(FileBundleIO.bundleDirectory(state.sourceDirectory, state.dataOut, state.indexOut, new BundleOptions()));
+    }
+
     private int addDirectory(WritableFileBundle fileBundle, Path sourceDirectory, boolean parallel) throws IOException {
         AtomicInteger counter = new AtomicInteger(0);
         try (Stream<Path> stream = Files.walk(sourceDirectory)) {
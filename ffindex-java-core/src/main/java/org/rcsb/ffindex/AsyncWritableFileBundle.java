@@ -0,0 +1,32 @@
+package org.rcsb.ffindex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link WritableFileBundle} that writes files on a dedicated I/O thread, so that producers don't wait for the disk.
+ * Files are queued in the order of submission and written in batches. A bounded queue applies backpressure: producers
+ * block once it is full.
+ */
+public interface AsyncWritableFileBundle extends WritableFileBundle {
+    /**
+     * Queue a new file to be added to this bundle. Blocks while the queue is full. The content must not be modified until
+     * the returned future completes. Futures complete on a thread of the bundle that isn't the I/O thread, so dependent
+     * actions don't delay writing, but they do delay the completion of later futures: hand long-running actions to an
+     * executor, e.g. by {@link CompletableFuture#thenRunAsync(Runnable)}, and never wait for this bundle within them.
+     * @param filename the name of this file
+     * @param byteBuffer the content of this file
+     * @return completes once the file and its index entry were written to the data and index file, futures complete in
+     * the order in which files were queued; completes exceptionally if writing failed, e.g. if the file already exists
+     * @throws IOException interrupted while waiting for space in the queue
+     * @throws IllegalStateException the bundle is closed
+     */
+    CompletableFuture<Void> writeFileAsync(String filename, ByteBuffer byteBuffer) throws IOException;
+
+    /**
+     * Wait until all queued files were written, successfully or not.
+     * @throws IOException interrupted while waiting
+     */
+    void drain() throws IOException;
+}
@@ -0,0 +1,63 @@
+package org.rcsb.ffindex;
+
+import org.rcsb.ffindex.impl.BoundedExecutor;
+import org.rcsb.ffindex.impl.BundleBuilder;
+
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+/**
+ * Controls how {@link FileBundleIO#bundleDirectory(java.nio.file.Path, java.nio.file.Path, java.nio.file.Path, BundleOptions)}
+ * and {@link FileBundleIO#bundleTar(java.io.InputStream, java.nio.file.Path, java.nio.file.Path, BundleOptions)} build
+ * bundles.
+ */
+public class BundleOptions {
+    private Executor executor;
+    private int maxConcurrentTransfers;
+    private Predicate<String> filter;
+
+    /**
+     * Default options: all regular files are added, directories are bundled by a shared pool of daemon threads that is
+     * separate from the one of asynchronous reads, with at most {@value BoundedExecutor#DEFAULT_MAX_CONCURRENCY}
+     * concurrent transfers.
+     */
+    public BundleOptions() {
+        this.maxConcurrentTransfers = BoundedExecutor.DEFAULT_MAX_CONCURRENCY;
+        this.filter = filename -> true;
+    }
+
+    /**
+     * Controls where files of a directory are transferred. Traversal of the directory waits while the maximum number of
+     * transfers runs.
+     * @param executor runs transfers
+     * @param maxConcurrentTransfers the maximum number of files that are transferred at the same time
+     * @return these options
+     */
+    public BundleOptions withExecutor(Executor executor, int maxConcurrentTransfers) {
+        if (maxConcurrentTransfers <= 0) {
+            throw new IllegalArgumentException("Concurrent transfers must be positive, got " + maxConcurrentTransfers);
+        }
+        this.executor = executor;
+        this.maxConcurrentTransfers = maxConcurrentTransfers;
+        return this;
+    }
+
+    /**
+     * Only add files whose name, relative to the directory or as stored in the tar stream, is accepted. Default: all
+     * files.
+     * @param filter accepts filenames
+     * @return these options
+     */
+    public BundleOptions withFilter(Predicate<String> filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    BoundedExecutor boundedExecutor() {
+        return executor != null ? new BoundedExecutor(executor, maxConcurrentTransfers) : BundleBuilder.defaultExecutor(maxConcurrentTransfers);
+    }
+
+    Predicate<String> getFilter() {
+        return filter;
+    }
+}
@@ -0,0 +1,347 @@
+package org.rcsb.ffindex;
+
+import org.rcsb.ffindex.impl.Hashing;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the content of frequently read files of read-only bundles in memory, see
+ * {@link FileBundleIO.ModeStep#withContentCache(ContentCache)}. Memory is bounded by a number of bytes. Entries are
+ * spread over 16 independently locked stripes, each evicting its least recently used entries within its share of the
+ * bound. Hence files larger than a 16th of the bound are never cached, they count as rejections. A new entry only
+ * displaces entries that were requested less often recently (TinyLFU admission), so a scan over rarely read files
+ * doesn't flush popular ones. Concurrent readers of the same missing file wait for a single load.
+ *
+ * <p>Usually one instance is shared by the whole process. Thread-safe.
+ */
+public class ContentCache {
+    private static final int STRIPES = 16;
+    private static final int SKETCH_ROWS = 4;
+    private static final int MAX_FREQUENCY = 15;
+
+    private final long maxBytes;
+    private final boolean offHeap;
+    private final Stripe[] stripes;
+    private final Map<Key, CompletableFuture<ByteBuffer>> loads;
+    // count-min sketch of recent requests, updated without synchronization: races only lose increments
+    private final byte[] frequencies;
+    private final int sketchMask;
+    private final int sampleSize;
+    private int additions;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder rejections;
+
+    /**
+     * Create an empty cache that holds content on the heap.
+     * @param maxBytes the bound of the content of all cached files, a 16th of which bounds the content of a single file
+     */
+    public ContentCache(long maxBytes) {
+        this(maxBytes, false);
+    }
+
+    /**
+     * Create an empty cache.
+     * @param maxBytes the bound of the content of all cached files, a 16th of which bounds the content of a single file
+     * @param offHeap true to hold content in direct buffers outside the Java heap
+     */
+    public ContentCache(long maxBytes, boolean offHeap) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive, got " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.loads = new ConcurrentHashMap<>();
+        // about one counter per cached KB, which resembles the number of small files that fit
+        int width = Integer.highestOneBit((int) Math.max(1024, Math.min(1 << 22, maxBytes >>> 10)));
+        this.frequencies = new byte[width * SKETCH_ROWS];
+        this.sketchMask = width - 1;
+        this.sampleSize = 10 * width;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.rejections = new LongAdder();
+    }
+
+    /**
+     * Loads the content of a file.
+     */
+    public interface Loader {
+        /**
+         * Read content.
+         * @param target the buffer to fill, with exactly as many bytes remaining as the file is long
+         * @throws IOException reading failed
+         */
+        void load(ByteBuffer target) throws IOException;
+    }
+
+    /**
+     * Retrieve cached content or load it. Meant to be called by bundles.
+     * @param file identifies the data file, must change whenever existing content of the data file changes
+     * @param offset the start of the file in the data file
+     * @param length the length of the file
+     * @param loader reads the content on a miss
+     * @return a read-only view of the content, positioned at 0
+     * @throws IOException loading failed
+     */
+    public ByteBuffer get(Object file, long offset, int length, Loader loader) throws IOException {
+        Key key = new Key(file, offset, length);
+        int hash = Hashing.mix(key.hashCode());
+        recordRequest(hash);
+        Stripe stripe = stripes[hash & (STRIPES - 1)];
+
+        ByteBuffer content = stripe.get(key);
+        if (content != null) {
+            hits.increment();
+            return content.duplicate();
+        }
+
+        CompletableFuture<ByteBuffer> created = new CompletableFuture<>();
+        CompletableFuture<ByteBuffer> future = loads.putIfAbsent(key, created);
+        if (future != null) {
+            // counted as hit: the content is read once
+            hits.increment();
+            return await(future).duplicate();
+        }
+
+        try {
+            // a concurrent load may have completed in the meantime
+            content = stripe.get(key);
+            if (content == null) {
+                misses.increment();
+                content = load(length, loader);
+                admit(stripe, key, hash, content);
+            }
+            created.complete(content);
+        } catch (IOException | RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, created);
+        }
+        return content.duplicate();
+    }
+
+    private ByteBuffer load(int length, Loader loader) throws IOException {
+        ByteBuffer content = offHeap ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+        loader.load(content);
+        return content.flip().asReadOnlyBuffer();
+    }
+
+    private static ByteBuffer await(CompletableFuture<ByteBuffer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for content");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to load content", e.getCause());
+        }
+    }
+
+    private void admit(Stripe stripe, Key key, int hash, ByteBuffer content) {
+        long budget = maxBytes / STRIPES;
+        int size = content.capacity();
+        if (size > budget) {
+            rejections.increment();
+            return;
+        }
+
+        int frequency = frequency(hash);
+        synchronized (stripe) {
+            Iterator<Map.Entry<Key, ByteBuffer>> iterator = stripe.entries.entrySet().iterator();
+            long weight = stripe.weight;
+            // check all victims before evicting any of them
+            int victims = 0;
+            while (weight + size > budget) {
+                Map.Entry<Key, ByteBuffer> victim = iterator.next();
+                if (frequency <= frequency(Hashing.mix(victim.getKey().hashCode()))) {
+                    rejections.increment();
+                    return;
+                }
+                weight -= victim.getValue().capacity();
+                victims++;
+            }
+
+            iterator = stripe.entries.entrySet().iterator();
+            for (int i = 0; i < victims; i++) {
+                stripe.weight -= iterator.next().getValue().capacity();
+                iterator.remove();
+                evictions.increment();
+            }
+            stripe.entries.put(key, content);
+            stripe.weight += size;
+        }
+    }
+
+    private void recordRequest(int hash) {
+        for (int row = 0; row < SKETCH_ROWS; row++) {
+            int index = counter(hash, row);
+            if (frequencies[index] < MAX_FREQUENCY) {
+                frequencies[index]++;
+            }
+        }
+        if (++additions >= sampleSize) {
+            age();
+        }
+    }
+
+    /**
+     * Halve all counters, so that the sketch reflects recent popularity.
+     */
+    private synchronized void age() {
+        if (additions < sampleSize) {
+            return;
+        }
+        for (int i = 0; i < frequencies.length; i++) {
+            frequencies[i] >>>= 1;
+        }
+        additions = 0;
+    }
+
+    private int frequency(int hash) {
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < SKETCH_ROWS; row++) {
+            frequency = Math.min(frequency, frequencies[counter(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private int counter(int hash, int row) {
+        int h = Hashing.mix(hash + row * 0x9e3779b9);
+        return row * (sketchMask + 1) + (h & sketchMask);
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.clear();
+                stripe.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * The number of cached files.
+     * @return an int
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The content of all cached files.
+     * @return a number of bytes
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                weight += stripe.weight;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * The number of reads that were served from memory, including those that waited for a concurrent load.
+     * @return a long
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of reads that had to load content.
+     * @return a long
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The number of files that were removed to make room for others.
+     * @return a long
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * The number of loaded files that weren't cached, because they were requested less often than the files they would
+     * have displaced or because they are too large.
+     * @return a long
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    private static final class Stripe {
+        // in access order, guarded by the stripe
+        private final LinkedHashMap<Key, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight;
+
+        synchronized ByteBuffer get(Key key) {
+            return entries.get(key);
+        }
+    }
+
+    private static final class Key {
+        private final Object file;
+        private final long offset;
+        private final int length;
+        private final int hash;
+
+        Key(Object file, long offset, int length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+            this.hash = 31 * (31 * file.hashCode() + Long.hashCode(offset)) + length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return offset == key.offset &&
+                    length == key.length &&
+                    file.equals(key.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -7,9 +7,16 @@ import java.util.stream.Stream;
  */
 public interface Entries {
     /**
-     * Retrieve the index that corresponds to the given filename.
+     * The largest length of a file, including its end marker. Lengths are stored as unsigned 32-bit values.
+     */
+    long MAX_LENGTH = 0xFFFFFFFFL;
+
+    /**
+     * Retrieve the index that corresponds to the given filename. Array-backed implementations return a position in
+     * [0, {@link #size()}), others may return any non-negative handle. Either way, the index is only meant to be passed
+     * to the other methods of the same instance. If a filename occurs more than once, the last occurrence wins.
      * @param filename the filename to resolve
-     * @return the index in the other arrays, -1 if not found
+     * @return the index that the other methods accept, -1 if not found
      */
     int getIndex(String filename);
 
@@ -21,21 +28,49 @@ public interface Entries {
     long getOffset(int index);
 
     /**
-     * The length of a file.
+     * The length of a file. Lengths beyond {@link Integer#MAX_VALUE} are negative, see {@link #getLongLength(int)}.
      * @param index the index of this file
-     * @return the length as int
+     * @return the length as unsigned int
      */
     int getLength(int index);
 
+    /**
+     * The length of a file, up to {@link #MAX_LENGTH}.
+     * @param index the index of this file
+     * @return the length as long
+     */
+    default long getLongLength(int index) {
+        return Integer.toUnsignedLong(getLength(index));
+    }
+
     /**
      * The collection of all registered filenames.
      * @return a set of Strings
      */
     Stream<String> filenames();
 
+    /**
+     * All registered filenames that start with a prefix, in lexicographic order. Emulates listing a directory if
+     * filenames contain '/'. The default implementation scans all filenames, implementations may use a sorted index to
+     * answer in time proportional to the number of matches.
+     * @param prefix the prefix, the empty String matches all filenames
+     * @return matching filenames in sorted order
+     */
+    default Stream<String> filenames(String prefix) {
+        return filenames().filter(filename -> filename.startsWith(prefix)).sorted();
+    }
+
     /**
      * The number of files present in this bundle.
      * @return an int
      */
     int size();
+
+    /**
+     * Estimate of the memory held by this object, on and off the heap. Used to bound caches.
+     * @return a number of bytes
+     */
+    default long memoryUsage() {
+        return 128L * size();
+    }
 }
@@ -36,6 +36,14 @@ public interface FileBundle extends Closeable {
      * Extension of temporary files.
      */
     String TMP_EXT = ".tmp";
+    /**
+     * Extension of binary index files, appended to the name of the index file.
+     */
+    String BINARY_INDEX_EXT = ".bin";
+    /**
+     * Extension of perfect hash files, appended to the name of the index file.
+     */
+    String PERFECT_HASH_EXT = ".mph";
 
     /**
      * Path to the data file.
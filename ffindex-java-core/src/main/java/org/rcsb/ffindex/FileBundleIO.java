@@ -1,22 +1,39 @@
 package org.rcsb.ffindex;
 
+import org.rcsb.ffindex.impl.AsyncWriteFileBundle;
+import org.rcsb.ffindex.impl.BinaryIndex;
+import org.rcsb.ffindex.impl.BoundedExecutor;
+import org.rcsb.ffindex.impl.BundleBuilder;
+import org.rcsb.ffindex.impl.CompactEntries;
+import org.rcsb.ffindex.impl.ConcurrentWriteFileBundle;
+import org.rcsb.ffindex.impl.FilteredEntries;
+import org.rcsb.ffindex.impl.ImmutableEntries;
+import org.rcsb.ffindex.impl.IndexParser;
 import org.rcsb.ffindex.impl.ReadWriteFileBundle;
+import org.rcsb.ffindex.impl.ShardedWriteFileBundle;
 import org.rcsb.ffindex.impl.WriteOnlyFileBundle;
+import org.rcsb.ffindex.impl.PerfectHashEntries;
 import org.rcsb.ffindex.impl.ReadOnlyFileBundle;
+import org.rcsb.ffindex.impl.SortedIndexEntries;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -48,10 +65,115 @@ public class FileBundleIO {
     public static class ModeStep {
         private final Path dataPath;
         private final Path indexPath;
+        private IndexType indexType;
+        private double filterFalsePositiveProbability;
+        private FilterStatistics filterStatistics;
+        private IndexCache indexCache;
+        private ReadStrategy readStrategy;
+        private Executor readExecutor;
+        private int maxConcurrentReads;
+        private ContentCache contentCache;
 
         private ModeStep(Path dataPath, Path indexPath) {
             this.dataPath = dataPath;
             this.indexPath = indexPath;
+            this.indexType = IndexType.HASH_MAP;
+            this.readStrategy = ReadStrategy.MAP_PER_READ;
+            this.maxConcurrentReads = BoundedExecutor.DEFAULT_MAX_CONCURRENCY;
+        }
+
+        /**
+         * Controls how the index of a read-only bundle is held in memory. Default: {@link IndexType#HASH_MAP}.
+         * @param indexType the representation to use
+         * @return this step
+         */
+        public ModeStep withIndexType(IndexType indexType) {
+            this.indexType = indexType;
+            return this;
+        }
+
+        /**
+         * Guards lookups of a read-only bundle by a Bloom filter that is built when the bundle is opened. Filenames that
+         * are definitely absent are then rejected by {@link ReadableFileBundle#containsFile(String)} and
+         * {@link ReadableFileBundle#readFile(String)} without consulting the index. Default: no filter.
+         * @param falsePositiveProbability the probability that an absent filename passes the filter, in (0, 1)
+         * @return this step
+         */
+        public ModeStep withFilter(double falsePositiveProbability) {
+            return withFilter(falsePositiveProbability, null);
+        }
+
+        /**
+         * Guards lookups of a read-only bundle by a Bloom filter and counts its answers.
+         * @param falsePositiveProbability the probability that an absent filename passes the filter, in (0, 1)
+         * @param statistics receives the counts, may be shared by several bundles
+         * @return this step
+         * @see #withFilter(double)
+         */
+        public ModeStep withFilter(double falsePositiveProbability, FilterStatistics statistics) {
+            if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+                throw new IllegalArgumentException("False positive probability must be in (0, 1), got " + falsePositiveProbability);
+            }
+            this.filterFalsePositiveProbability = falsePositiveProbability;
+            this.filterStatistics = statistics;
+            return this;
+        }
+
+        /**
+         * Shares the index of read-only bundles with all other bundles that are opened with the same cache, the same
+         * index file and the same options. Opening a bundle whose index is cached only opens the data file. Default: no
+         * cache, every bundle parses its index.
+         * @param indexCache the cache, usually shared by the whole process
+         * @return this step
+         */
+        public ModeStep withIndexCache(IndexCache indexCache) {
+            this.indexCache = indexCache;
+            return this;
+        }
+
+        /**
+         * Controls how read-only and appendable bundles read the content of files. Default:
+         * {@link ReadStrategy#MAP_PER_READ}.
+         * @param readStrategy the strategy to use
+         * @return this step
+         */
+        public ModeStep withReadStrategy(ReadStrategy readStrategy) {
+            this.readStrategy = readStrategy;
+            return this;
+        }
+
+        /**
+         * Controls where asynchronous reads of read-only and appendable bundles run, see
+         * {@link ReadableFileBundle#readFileAsync(String)}. Reads beyond the bound wait in a queue, so bursts of requests
+         * don't occupy more threads, file handles or buffers. Default: a shared pool of daemon threads, with at most
+         * {@value BoundedExecutor#DEFAULT_MAX_CONCURRENCY} concurrent reads per bundle.
+         * @param executor runs reads, e.g. a virtual thread per task executor on JDKs that support them
+         * @param maxConcurrentReads the maximum number of reads of this bundle that run at the same time
+         * @return this step
+         */
+        public ModeStep withReadExecutor(Executor executor, int maxConcurrentReads) {
+            if (maxConcurrentReads <= 0) {
+                throw new IllegalArgumentException("Concurrent reads must be positive, got " + maxConcurrentReads);
+            }
+            this.readExecutor = executor;
+            this.maxConcurrentReads = maxConcurrentReads;
+            return this;
+        }
+
+        /**
+         * Serves reads of read-only bundles from memory if the file was read recently, by this or any other bundle that
+         * is opened with the same cache and the same data file. Applies to {@link ReadableFileBundle#readFile(String)}
+         * and the methods that build on it. Default: no cache, the operating system's page cache only.
+         * @param contentCache the cache, usually shared by the whole process
+         * @return this step
+         */
+        public ModeStep withContentCache(ContentCache contentCache) {
+            this.contentCache = contentCache;
+            return this;
+        }
+
+        private BoundedExecutor boundedReadExecutor() {
+            return readExecutor != null ? new BoundedExecutor(readExecutor, maxConcurrentReads) : BoundedExecutor.ofDefault();
         }
 
         /**
@@ -60,7 +182,35 @@ public class FileBundleIO {
          * @throws IOException reading failed
          */
         public ReadableFileBundle inReadOnlyMode() throws IOException {
-            return new ReadOnlyFileBundle(dataPath, indexPath);
+            Entries entries = indexCache != null ? indexCache.get(indexPath, indexType, filterFalsePositiveProbability, this::loadEntries) : loadEntries();
+            if (filterStatistics != null) {
+                // the filter is shared, only the statistics belong to this bundle
+                entries = ((FilteredEntries) entries).withStatistics(filterStatistics);
+            }
+            return new ReadOnlyFileBundle(dataPath, indexPath, entries, readStrategy, boundedReadExecutor(), contentCache);
+        }
+
+        private Entries loadEntries() throws IOException {
+            Entries entries = readEntries();
+            return filterFalsePositiveProbability > 0 ? FilteredEntries.of(entries, filterFalsePositiveProbability, null) : entries;
+        }
+
+        private Entries readEntries() throws IOException {
+            switch (indexType) {
+                case COMPACT:
+                    return CompactEntries.of(indexPath, false);
+                case COMPACT_OFF_HEAP:
+                    return CompactEntries.of(indexPath, true);
+                case SORTED:
+                    return SortedIndexEntries.of(indexPath);
+                case BINARY:
+                    return BinaryIndex.load(indexPath, binaryIndexPath(indexPath));
+                case PERFECT_HASH:
+                    return PerfectHashEntries.of(indexPath, perfectHashPath(indexPath));
+                case HASH_MAP:
+                default:
+                    return ImmutableEntries.of(indexPath);
+            }
         }
 
         /**
@@ -73,6 +223,54 @@ public class FileBundleIO {
             return new WriteOnlyFileBundle(dataPath, indexPath);
         }
 
+        /**
+         * Create a new write-only bundle that writes the content of files from several threads concurrently. Only the
+         * index entries are appended one at a time, so writes scale with the number of threads where storage allows.
+         * Like {@link #inWriteOnlyMode()}, the bundle doesn't check that written files have unique names.
+         * @return a new bundle that supports concurrent write operations
+         * @throws IOException files already exists or reading failed
+         */
+        public WritableFileBundle inConcurrentWriteMode() throws IOException {
+            createFiles(false, dataPath, indexPath);
+            return new ConcurrentWriteFileBundle(dataPath, indexPath);
+        }
+
+        /**
+         * Create a new write-only bundle that gives each writing thread a private shard, so that threads never wait for
+         * each other. Shards are assembled into a single standard bundle when it is closed, which transfers all content
+         * once more. Doesn't check that written files have unique names.
+         * @return a new bundle that supports concurrent write operations
+         * @throws IOException files already exists or reading failed
+         */
+        public WritableFileBundle inShardedWriteMode() throws IOException {
+            return inShardedWriteMode(false);
+        }
+
+        /**
+         * Create a new write-only bundle that gives each writing thread a private shard, see
+         * {@link #inShardedWriteMode()}.
+         * @param rejectDuplicates reject files whose name was written before, which tracks all names in memory
+         * @return a new bundle that supports concurrent write operations
+         * @throws IOException files already exists or reading failed
+         */
+        public WritableFileBundle inShardedWriteMode(boolean rejectDuplicates) throws IOException {
+            createFiles(false, dataPath, indexPath);
+            return new ShardedWriteFileBundle(dataPath, indexPath, rejectDuplicates);
+        }
+
+        /**
+         * Create a new write-only bundle that writes files on a dedicated I/O thread, see
+         * {@link AsyncWritableFileBundle#writeFileAsync(String, ByteBuffer)}. Producers only block while the queue is
+         * full. Doesn't check that written files have unique names.
+         * @param maxPendingFiles the capacity of the queue
+         * @return a new bundle that supports asynchronous write operations
+         * @throws IOException files already exists or reading failed
+         */
+        public AsyncWritableFileBundle inAsyncWriteMode(int maxPendingFiles) throws IOException {
+            createFiles(false, dataPath, indexPath);
+            return new AsyncWriteFileBundle(new WriteOnlyFileBundle(dataPath, indexPath), maxPendingFiles);
+        }
+
         /**
          * Create an appendable bundle.
          * @return a bundle that supports read and write operations
@@ -80,7 +278,7 @@ public class FileBundleIO {
          */
         public AppendableFileBundle inReadWriteMode() throws IOException {
             createFiles(true, dataPath, indexPath);
-            return new ReadWriteFileBundle(dataPath, indexPath);
+            return new ReadWriteFileBundle(dataPath, indexPath, readStrategy, boundedReadExecutor());
         }
 
         /**
@@ -102,9 +300,95 @@ public class FileBundleIO {
     }
 
     /**
-     * Sorts all entries of an index file. Not relevant for this library but this allows for interoperability with other
-     * FFindex implementations, which perform a binary search to navigate the contents of the index file. Modifies the
-     * file in place.
+     * Creates a new bundle of all regular files below a directory. Files are transferred into the data file by
+     * {@link FileChannel#transferFrom}, without copying them into the JVM. The directory is traversed by the calling
+     * thread while files are transferred concurrently, see {@link BundleOptions#withExecutor(Executor, int)}. Filenames
+     * are relative to the directory, with '/' as separator. Index entries follow the order in which transfers complete.
+     * @param source the directory
+     * @param dataPath the location of the data file, must not exist
+     * @param indexPath the location of the index file, must not exist
+     * @param options controls concurrency and which files are added
+     * @return the number of bundled files
+     * @throws IOException bundle files already exist, reading or writing failed
+     */
+    public static int bundleDirectory(Path source, Path dataPath, Path indexPath, BundleOptions options) throws IOException {
+        return buildBundle(dataPath, indexPath, bundle -> BundleBuilder.addDirectory(source, bundle, options.getFilter(), options.boundedExecutor()));
+    }
+
+    /**
+     * Creates a new bundle of all regular files of a tar stream (ustar, pax or GNU format, uncompressed). Entries are
+     * added in the order of the stream, filenames are kept as stored. Content of a {@link java.io.FileInputStream} is
+     * transferred without copying it into the JVM.
+     * @param source the tar stream, not closed
+     * @param dataPath the location of the data file, must not exist
+     * @param indexPath the location of the index file, must not exist
+     * @param options controls which files are added
+     * @return the number of bundled files
+     * @throws IOException bundle files already exist, the stream is malformed, reading or writing failed
+     */
+    public static int bundleTar(InputStream source, Path dataPath, Path indexPath, BundleOptions options) throws IOException {
+        return buildBundle(dataPath, indexPath, bundle -> BundleBuilder.addTar(source, bundle, options.getFilter()));
+    }
+
+    /**
+     * Adds files to a new bundle that is built in tmp files next to its final location. The tmp files are moved into
+     * place once all files were added and deleted otherwise, so a failed attempt leaves nothing behind and can simply be
+     * retried.
+     * @param dataPath the location of the data file, must not exist
+     * @param indexPath the location of the index file, must not exist
+     * @param builder adds the files
+     * @return the number of bundled files
+     * @throws IOException bundle files already exist, adding files failed
+     */
+    private static int buildBundle(Path dataPath, Path indexPath, BundleAction builder) throws IOException {
+        for (Path path : new Path[] { dataPath, indexPath }) {
+            if (Files.exists(path)) {
+                throw new FileAlreadyExistsException(path.toString());
+            }
+        }
+
+        Path tmpDataPath = dataPath.resolveSibling(dataPath.getFileName() + FileBundle.TMP_EXT);
+        Path tmpIndexPath = indexPath.resolveSibling(indexPath.getFileName() + FileBundle.TMP_EXT);
+        try {
+            // leftovers of a crashed attempt
+            Files.deleteIfExists(tmpDataPath);
+            Files.deleteIfExists(tmpIndexPath);
+            ModeStep.createFiles(false, tmpDataPath, tmpIndexPath);
+            int count;
+            try (ConcurrentWriteFileBundle bundle = new ConcurrentWriteFileBundle(tmpDataPath, tmpIndexPath)) {
+                count = builder.addTo(bundle);
+            }
+
+            Files.move(tmpDataPath, dataPath);
+            try {
+                Files.move(tmpIndexPath, indexPath);
+            } catch (IOException e) {
+                Files.delete(dataPath);
+                throw e;
+            }
+            return count;
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(tmpDataPath);
+                Files.deleteIfExists(tmpIndexPath);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds files to a bundle.
+     */
+    private interface BundleAction {
+        int addTo(ConcurrentWriteFileBundle bundle) throws IOException;
+    }
+
+    /**
+     * Sorts all entries of an index file. This allows for interoperability with other FFindex implementations, which
+     * perform a binary search to navigate the contents of the index file, and is required to open bundles with
+     * {@link IndexType#SORTED}. Modifies the file in place.
      * @param indexPath the location of the corresponding index file
      * @throws IOException reading or writing failed
      */
@@ -118,6 +402,36 @@ public class FileBundleIO {
         Files.write(indexPath, bytes);
     }
 
+    /**
+     * Writes a binary sidecar of an index file, which allows to open the bundle without parsing the index file (see
+     * {@link IndexType#BINARY}). The sidecar has to be rewritten whenever the index file changes, otherwise it will be
+     * ignored.
+     * @param indexPath the location of the corresponding index file
+     * @throws IOException reading or writing failed
+     */
+    public static void writeBinaryIndex(Path indexPath) throws IOException {
+        BinaryIndex.write(indexPath, binaryIndexPath(indexPath));
+    }
+
+    private static Path binaryIndexPath(Path indexPath) {
+        return indexPath.resolveSibling(indexPath.getFileName() + FileBundle.BINARY_INDEX_EXT);
+    }
+
+    /**
+     * Builds a minimal perfect hash function over the filenames of an index file and writes it to a sidecar, so that
+     * bundles opened with {@link IndexType#PERFECT_HASH} don't have to build it. The sidecar has to be rewritten
+     * whenever the index file changes, otherwise it will be ignored.
+     * @param indexPath the location of the corresponding index file
+     * @throws IOException reading or writing failed
+     */
+    public static void writePerfectHash(Path indexPath) throws IOException {
+        PerfectHashEntries.write(indexPath, perfectHashPath(indexPath));
+    }
+
+    private static Path perfectHashPath(Path indexPath) {
+        return indexPath.resolveSibling(indexPath.getFileName() + FileBundle.PERFECT_HASH_EXT);
+    }
+
     /**
      * Removes a collection of filenames from the index, effectively shadowing/hiding these files. Does not update the
      * data file, all data remains intact. Use {@link #compactBundle(Path, Path)} to make actual changes to the data
@@ -162,14 +476,17 @@ public class FileBundleIO {
             for (Entry entry : entries) {
                 String filename = entry.getFilename();
                 long originalOffset = entry.getOffset();
-                int length = entry.getLength();
+                long length = entry.getLength();
 
-                // move data -- optimally, this would use DirectByteBuffers -- however, there's no API to dispose them again
-                // and in tight loops the OS might exceed the limit of memory-mapped regions
-                ByteBuffer content = ByteBuffer.allocate(length);
-                originalData.read(content, originalOffset);
-                content.rewind();
-                updatedData.write(content);
+                // move data without copying it into the JVM, which also supports files beyond the size of a buffer
+                long transferred = 0;
+                while (transferred < length) {
+                    long n = originalData.transferTo(originalOffset + transferred, length - transferred, updatedData);
+                    if (n == 0 && originalOffset + transferred >= originalData.size()) {
+                        throw new EOFException("Data file ends before " + (originalOffset + length));
+                    }
+                    transferred += n;
+                }
 
                 // track new offset to index file
                 String line = filename + INDEX_ENTRY_DELIMITER +
@@ -187,23 +504,23 @@ public class FileBundleIO {
     }
 
     private static List<Entry> parseEntries(Path indexPath) throws IOException {
-        try (Stream<String> lines = Files.lines(indexPath)) {
-            return lines.map(line -> line.split(INDEX_ENTRY_DELIMITER))
-                    .map(split -> new Entry(split[0], Long.parseLong(split[1]), Integer.parseInt(split[2])))
-                    .collect(Collectors.toList());
+        IndexParser.ParsedIndex parsed = IndexParser.parse(indexPath);
+        List<Entry> entries = new ArrayList<>(parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            entries.add(new Entry(parsed.getFilename(i), parsed.getOffset(i), parsed.getLongLength(i)));
         }
+        return entries;
     }
 
-    private static final Entry EMPTY_ENTRY = new Entry("", 0, 0);
     /**
      * Convenience class that represents one line of the index file.
      */
     static class Entry {
         private final String filename;
         private final long offset;
-        private final int length;
+        private final long length;
 
-        Entry(String filename, long offset, int length) {
+        Entry(String filename, long offset, long length) {
             this.filename = filename;
             this.offset = offset;
             this.length = length;
@@ -217,7 +534,7 @@ public class FileBundleIO {
             return offset;
         }
 
-        int getLength() {
+        long getLength() {
             return length;
         }
     }
@@ -237,19 +554,27 @@ public class FileBundleIO {
             throw new IllegalStateException("There are duplicate files - won't merge");
         }
 
+        // merge data -- rebase by the size of the data file, which may end with unreferenced bytes of failed writes
+        long o;
+        try (FileChannel dataChannel = new RandomAccessFile(dataPath.toFile(), "rw").getChannel();
+             FileChannel additionsDataChannel = new RandomAccessFile(additionsDataPath.toFile(), "r").getChannel()) {
+            o = dataChannel.size();
+            long size = additionsDataChannel.size();
+            long transferred = 0;
+            while (transferred < size) {
+                long n = dataChannel.transferFrom(additionsDataChannel, o + transferred, size - transferred);
+                if (n == 0) {
+                    throw new EOFException("Data file ends before " + size);
+                }
+                transferred += n;
+            }
+        }
+
         // merge indices
-        Entry lastEntry = originalEntries.stream().max(Comparator.comparingLong(Entry::getOffset)).orElse(EMPTY_ENTRY);
-        long o = lastEntry.getOffset() + lastEntry.getLength();
         byte[] indexAdditions = additionalEntries.stream()
                 .map(e -> e.getFilename() + INDEX_ENTRY_DELIMITER + (e.getOffset() + o) + INDEX_ENTRY_DELIMITER + e.getLength())
                 .collect(Collectors.joining(LINE_END, "", LINE_END))
                 .getBytes(StandardCharsets.UTF_8);
         Files.write(indexPath, indexAdditions, StandardOpenOption.APPEND);
-
-        // merge data
-        try (FileChannel dataChannel = new RandomAccessFile(dataPath.toFile(), "rw").getChannel();
-             FileChannel additionsDataChannel = new RandomAccessFile(additionsDataPath.toFile(), "r").getChannel()) {
-            dataChannel.transferFrom(additionsDataChannel, dataChannel.size(), Long.MAX_VALUE);
-        }
     }
 }
@@ -0,0 +1,66 @@
+package org.rcsb.ffindex;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A file of a bundle together with its content, see {@link ReadableFileBundle#entries()}.
+ */
+public final class FileEntry {
+    private final String filename;
+    private final long offset;
+    private final ByteBuffer content;
+
+    /**
+     * Create an entry.
+     * @param filename the name of this file
+     * @param offset the start of this file in the data file
+     * @param content read-only content of this file
+     */
+    public FileEntry(String filename, long offset, ByteBuffer content) {
+        this.filename = filename;
+        this.offset = offset;
+        this.content = content;
+    }
+
+    /**
+     * The name of this file.
+     * @return a String
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * The start of this file in the data file.
+     * @return an offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * The length of this file.
+     * @return a number of bytes
+     */
+    public int getLength() {
+        return content.limit();
+    }
+
+    /**
+     * The content of this file. The buffer may share memory with the content of neighboring files, so holding on to it
+     * keeps more than this file in memory.
+     * @return a read-only buffer positioned at 0
+     */
+    public ByteBuffer getContent() {
+        return content.duplicate();
+    }
+
+    @Override
+    public String toString() {
+        return "FileEntry{" +
+                "filename='" + filename + '\'' +
+                ", offset=" + offset +
+                ", length=" + getLength() +
+                '}';
+    }
+}
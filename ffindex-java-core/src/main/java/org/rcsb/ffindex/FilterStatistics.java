@@ -0,0 +1,81 @@
+package org.rcsb.ffindex;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the answers of the filter that guards lookups in a bundle, see
+ * {@link FileBundleIO.ModeStep#withFilter(double, FilterStatistics)}. One instance can be shared by several bundles and
+ * may be updated concurrently.
+ */
+public class FilterStatistics {
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder positives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Record a lookup. Meant to be called by the filtered index.
+     * @param passedFilter whether the filter considered the filename as possibly present
+     * @param found whether the filename was present
+     */
+    public void record(boolean passedFilter, boolean found) {
+        if (!passedFilter) {
+            negatives.increment();
+        } else if (found) {
+            positives.increment();
+        } else {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * The number of lookups that the filter answered as definitely absent, without consulting the index.
+     * @return a long
+     */
+    public long getNegatives() {
+        return negatives.sum();
+    }
+
+    /**
+     * The number of lookups that passed the filter and were present.
+     * @return a long
+     */
+    public long getPositives() {
+        return positives.sum();
+    }
+
+    /**
+     * The number of lookups that passed the filter but weren't present.
+     * @return a long
+     */
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * The fraction of absent filenames that the filter failed to reject.
+     * @return a value in [0, 1], 0 if no absent filename was looked up yet
+     */
+    public double getFalsePositiveRate() {
+        long falsePositives = getFalsePositives();
+        long absent = falsePositives + getNegatives();
+        return absent == 0 ? 0 : falsePositives / (double) absent;
+    }
+
+    /**
+     * Reset all counters.
+     */
+    public void reset() {
+        negatives.reset();
+        positives.reset();
+        falsePositives.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "FilterStatistics{" +
+                "negatives=" + getNegatives() +
+                ", positives=" + getPositives() +
+                ", falsePositives=" + getFalsePositives() +
+                '}';
+    }
+}
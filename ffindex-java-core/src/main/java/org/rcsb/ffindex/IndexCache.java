@@ -0,0 +1,218 @@
+package org.rcsb.ffindex;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares the parsed index of read-only bundles between all handles that open the same bundle, see
+ * {@link FileBundleIO.ModeStep#withIndexCache(IndexCache)}. Entries are keyed by the location, size and modification
+ * time of the index file and by the {@link IndexType}, so a changed index file is parsed again. Concurrent openers of
+ * the same bundle wait for a single load. The least recently used entries are evicted once the estimated memory of all
+ * entries exceeds the configured bound.
+ *
+ * <p>Usually one instance is shared by the whole process. Thread-safe.
+ */
+public class IndexCache {
+    private final long maxBytes;
+    private final Map<Key, CompletableFuture<Entries>> loads;
+    // completed entries in access order with their weight, guarded by itself
+    private final LinkedHashMap<Key, Long> weights;
+    private long weight;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * Create an empty cache.
+     * @param maxBytes the bound of the estimated memory of all cached indices, see {@link Entries#memoryUsage()}
+     */
+    public IndexCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive, got " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.loads = new ConcurrentHashMap<>();
+        this.weights = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Loads the entries of an index file.
+     */
+    interface Loader {
+        Entries load() throws IOException;
+    }
+
+    /**
+     * Retrieve cached entries or load them. Only one thread loads the entries of a key, others wait for the result.
+     * @param indexPath the index file
+     * @param indexType the representation of the entries
+     * @param filterFalsePositiveProbability the filter that guards the entries, 0 for none
+     * @param loader loads the entries on a miss
+     * @return the entries
+     * @throws IOException loading failed
+     */
+    Entries get(Path indexPath, IndexType indexType, double filterFalsePositiveProbability, Loader loader) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        Key key = new Key(indexPath.toAbsolutePath().normalize(), attributes.size(), attributes.lastModifiedTime().toMillis(), indexType, filterFalsePositiveProbability);
+
+        CompletableFuture<Entries> future = loads.get(key);
+        if (future == null) {
+            CompletableFuture<Entries> created = new CompletableFuture<>();
+            future = loads.putIfAbsent(key, created);
+            if (future == null) {
+                misses.increment();
+                return load(key, created, loader);
+            }
+        }
+
+        hits.increment();
+        synchronized (weights) {
+            // updates the access order
+            weights.get(key);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for index " + indexPath);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to load index " + indexPath, e.getCause());
+        }
+    }
+
+    private Entries load(Key key, CompletableFuture<Entries> future, Loader loader) throws IOException {
+        Entries entries;
+        try {
+            entries = loader.load();
+        } catch (IOException | RuntimeException | Error e) {
+            // failures aren't cached, the next opener tries again
+            loads.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+        future.complete(entries);
+        admit(key, entries.memoryUsage());
+        return entries;
+    }
+
+    private void admit(Key key, long entryWeight) {
+        synchronized (weights) {
+            // previous versions of the index file will never be requested again
+            for (Iterator<Key> iterator = weights.keySet().iterator(); iterator.hasNext(); ) {
+                Key other = iterator.next();
+                if (other.path.equals(key.path) && (other.size != key.size || other.modified != key.modified)) {
+                    weight -= weights.get(other);
+                    loads.remove(other);
+                    iterator.remove();
+                }
+            }
+
+            weights.put(key, entryWeight);
+            weight += entryWeight;
+            for (Iterator<Map.Entry<Key, Long>> iterator = weights.entrySet().iterator(); weight > maxBytes && iterator.hasNext(); ) {
+                Map.Entry<Key, Long> eldest = iterator.next();
+                weight -= eldest.getValue();
+                loads.remove(eldest.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all entries. Bundles that are open keep their entries.
+     */
+    public void clear() {
+        synchronized (weights) {
+            for (Key key : weights.keySet()) {
+                loads.remove(key);
+            }
+            weights.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * The number of cached indices.
+     * @return an int
+     */
+    public int size() {
+        synchronized (weights) {
+            return weights.size();
+        }
+    }
+
+    /**
+     * The estimated memory of all cached indices.
+     * @return a number of bytes
+     */
+    public long getWeight() {
+        synchronized (weights) {
+            return weight;
+        }
+    }
+
+    /**
+     * The number of opened bundles that reused a cached index, including those that waited for a concurrent load.
+     * @return a long
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of opened bundles that had to load their index.
+     * @return a long
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static final class Key {
+        private final Path path;
+        private final long size;
+        private final long modified;
+        private final IndexType indexType;
+        private final double filterFalsePositiveProbability;
+
+        Key(Path path, long size, long modified, IndexType indexType, double filterFalsePositiveProbability) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.indexType = indexType;
+            this.filterFalsePositiveProbability = filterFalsePositiveProbability;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return size == key.size &&
+                    modified == key.modified &&
+                    Double.compare(filterFalsePositiveProbability, key.filterFalsePositiveProbability) == 0 &&
+                    path.equals(key.path) &&
+                    indexType == key.indexType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, modified, indexType, filterFalsePositiveProbability);
+        }
+    }
+}
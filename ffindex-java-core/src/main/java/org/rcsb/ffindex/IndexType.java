@@ -0,0 +1,39 @@
+package org.rcsb.ffindex;
+
+/**
+ * How the index of a read-only bundle is held in memory.
+ */
+public enum IndexType {
+    /**
+     * Default: a map of filenames to their index. Fast but each entry costs several objects on the heap.
+     */
+    HASH_MAP,
+    /**
+     * Filenames are stored as UTF-8 bytes in one arena, lookups use an open-addressing table of primitive ints. Needs a
+     * fraction of the heap of {@link #HASH_MAP} and creates no objects per entry.
+     */
+    COMPACT,
+    /**
+     * Like {@link #COMPACT}, but all storage is placed outside the Java heap.
+     */
+    COMPACT_OFF_HEAP,
+    /**
+     * The index file is memory-mapped and searched by binary search, nothing is parsed up front. Opening takes constant
+     * time regardless of the size of the bundle. Requires the index file to be sorted, see
+     * {@link FileBundleIO#sortIndexFile(java.nio.file.Path)}.
+     */
+    SORTED,
+    /**
+     * Like {@link #COMPACT}, but mapped from a binary sidecar of the index file (named like the index file, with
+     * {@link FileBundle#BINARY_INDEX_EXT} appended). If the sidecar is missing or stale then the index file is parsed
+     * and the sidecar is regenerated. See {@link FileBundleIO#writeBinaryIndex(java.nio.file.Path)}.
+     */
+    BINARY,
+    /**
+     * Filenames are resolved by a minimal perfect hash function: one evaluation of the function and one comparison of
+     * the stored filename, with no hash table. The function is read from a sidecar of the index file (named like the
+     * index file, with {@link FileBundle#PERFECT_HASH_EXT} appended) or built while loading if the sidecar is missing
+     * or stale. See {@link FileBundleIO#writePerfectHash(java.nio.file.Path)}.
+     */
+    PERFECT_HASH
+}
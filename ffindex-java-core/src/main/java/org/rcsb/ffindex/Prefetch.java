@@ -0,0 +1,84 @@
+package org.rcsb.ffindex;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of reading parts of a data file ahead of time, so that the operating system caches them, see
+ * {@link ReadableFileBundle#prefetch(java.util.Collection, long)}. Thread-safe.
+ */
+public class Prefetch {
+    /**
+     * Pass as bandwidth to read as fast as possible.
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final long totalBytes;
+    private final AtomicLong prefetchedBytes;
+    private final CompletableFuture<Void> completion;
+
+    /**
+     * Track a new prefetch. Meant to be called by bundles.
+     * @param totalBytes the number of bytes to read
+     */
+    public Prefetch(long totalBytes) {
+        this.totalBytes = totalBytes;
+        this.prefetchedBytes = new AtomicLong();
+        this.completion = new CompletableFuture<>();
+    }
+
+    /**
+     * Record read bytes. Meant to be called by bundles.
+     * @param bytes the number of bytes read since the last invocation
+     */
+    public void record(long bytes) {
+        prefetchedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * The number of bytes to read.
+     * @return a long
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * The number of bytes read so far.
+     * @return a long
+     */
+    public long getPrefetchedBytes() {
+        return prefetchedBytes.get();
+    }
+
+    /**
+     * The fraction of bytes read so far.
+     * @return a value in [0, 1]
+     */
+    public double getProgress() {
+        return totalBytes == 0 ? 1 : getPrefetchedBytes() / (double) totalBytes;
+    }
+
+    /**
+     * Completes once all bytes are read, exceptionally if reading failed.
+     * @return a future
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Stop reading. Bytes that were read so far stay cached.
+     */
+    public void cancel() {
+        completion.cancel(false);
+    }
+
+    @Override
+    public String toString() {
+        return "Prefetch{" +
+                "prefetchedBytes=" + getPrefetchedBytes() +
+                ", totalBytes=" + totalBytes +
+                '}';
+    }
+}
@@ -0,0 +1,31 @@
+package org.rcsb.ffindex;
+
+/**
+ * How a bundle reads the content of files from its data file.
+ */
+public enum ReadStrategy {
+    /**
+     * Default: every read maps the region of the file. Costs a system call and a new memory mapping per read, which
+     * may exhaust the limit of mapped regions of a process at high read rates.
+     */
+    MAP_PER_READ,
+    /**
+     * The data file is mapped once in a few large segments, reads return slices of these segments. Files that cross
+     * the boundary of two segments are mapped individually. Segments are extended when a bundle in read-write mode
+     * reads content that was appended after it was opened.
+     */
+    MAPPED_SEGMENTS,
+    /**
+     * Content is read by positional reads into direct buffers of a bounded pool, without any memory mapping. Pass
+     * buffers to {@link ReadableFileBundle#releaseBuffer(java.nio.ByteBuffer)} once they are consumed, so that they are
+     * reused. Buffers are writable and their capacity may exceed the length of the file.
+     */
+    POSITIONAL_READ,
+    /**
+     * Like {@link #MAPPED_SEGMENTS}, but the whole data file is loaded into memory when the bundle is opened, so that
+     * no read waits for the disk. Opening takes as long as reading the data file. The content stays in the page cache
+     * of the operating system and isn't locked, so it may still be evicted under memory pressure. Meant for bundles
+     * that fit comfortably into memory.
+     */
+    IN_MEMORY
+}
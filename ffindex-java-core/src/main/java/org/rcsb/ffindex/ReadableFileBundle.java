@@ -1,7 +1,18 @@
 package org.rcsb.ffindex;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -12,10 +23,186 @@ public interface ReadableFileBundle extends FileBundle {
      * Read a specific file, identified by its filename.
      * @param filename the name of this file
      * @return the requested file as {@link java.nio.ByteBuffer}
-     * @throws IOException file doesn't exist or reading failed
+     * @throws IOException file doesn't exist, is larger than a buffer can hold or reading failed
      */
     ByteBuffer readFile(String filename) throws IOException;
 
+    /**
+     * Read a specific file into a buffer, starting at the position of the buffer. Nothing is allocated, so buffers can
+     * be reused for many reads. See {@link #fileLength(String)} to size buffers.
+     * @param filename the name of this file
+     * @param target the buffer to fill, its position is advanced by the length of the file
+     * @return the length of the file
+     * @throws IOException file doesn't exist, is larger than a buffer can hold or reading failed
+     * @throws java.nio.BufferOverflowException if the file doesn't fit into the remaining space of the buffer, nothing
+     * is read then
+     */
+    int readFile(String filename, ByteBuffer target) throws IOException;
+
+    /**
+     * The length of a specific file, without reading it.
+     * @param filename the name of this file
+     * @return the number of bytes of this file
+     * @throws IOException file doesn't exist or is larger than a buffer can hold, see {@link #fileLongLength(String)}
+     */
+    int fileLength(String filename) throws IOException;
+
+    /**
+     * The length of a specific file, without reading it. Supports files that are larger than a buffer can hold.
+     * @param filename the name of this file
+     * @return the number of bytes of this file
+     * @throws IOException file doesn't exist
+     */
+    long fileLongLength(String filename) throws IOException;
+
+    /**
+     * Read a part of a specific file, e.g. its header, according to the read strategy of this bundle. Only the
+     * requested bytes are read, so this supports files that are larger than a buffer can hold.
+     * @param filename the name of this file
+     * @param position the start of the part, relative to the start of the file
+     * @param length the maximum length of the part
+     * @return the requested part as {@link java.nio.ByteBuffer}, shorter than length if the file ends before, empty if
+     * position is beyond the end of the file
+     * @throws IOException file doesn't exist or reading failed
+     * @throws IllegalArgumentException position or length are negative
+     */
+    ByteBuffer readFileRange(String filename, long position, int length) throws IOException;
+
+    /**
+     * A read-only channel over a specific file. The channel reads lazily by positional reads, without mapping or
+     * materializing the file, so reading parts of large files only touches these parts. Channels aren't thread-safe,
+     * closing them doesn't close this bundle.
+     * @param filename the name of this file
+     * @return a new channel
+     * @throws IOException file doesn't exist
+     */
+    SeekableByteChannel newByteChannel(String filename) throws IOException;
+
+    /**
+     * An {@link InputStream} over a specific file, see {@link #newByteChannel(String)}.
+     * @param filename the name of this file
+     * @return a new, unbuffered stream
+     * @throws IOException file doesn't exist
+     */
+    default InputStream newInputStream(String filename) throws IOException {
+        return Channels.newInputStream(newByteChannel(filename));
+    }
+
+    /**
+     * Write a specific file to a channel without reading it into memory. The transfer is delegated to the operating
+     * system where possible, e.g. by sendfile for sockets, so the content never passes through the JVM. Ignores the
+     * read strategy of this bundle.
+     * @param filename the name of this file
+     * @param target the destination
+     * @return the number of bytes transferred, less than the length of the file only if target is a non-blocking channel
+     * that accepted no more bytes
+     * @throws IOException file doesn't exist or transferring failed
+     */
+    long transferFile(String filename, WritableByteChannel target) throws IOException;
+
+    /**
+     * Read a batch of files. Files are read in the order of their offsets, and files that are close to each other in
+     * the data file are read together, which turns many random reads into few sequential ones.
+     * @param filenames the files to read, duplicates are read once
+     * @param consumer receives filename and read-only content of each file, in the order of the data file
+     * @throws IOException any file doesn't exist or reading failed, nothing is read if a file doesn't exist
+     */
+    void readFiles(Collection<String> filenames, BiConsumer<String, ByteBuffer> consumer) throws IOException;
+
+    /**
+     * Read a batch of files, see {@link #readFiles(Collection, BiConsumer)}.
+     * @param filenames the files to read
+     * @return the content of each file, in the order of filenames
+     * @throws IOException any file doesn't exist or reading failed
+     */
+    default Map<String, ByteBuffer> readFiles(Collection<String> filenames) throws IOException {
+        Map<String, ByteBuffer> contents = new LinkedHashMap<>();
+        for (String filename : filenames) {
+            contents.put(filename, null);
+        }
+        readFiles(filenames, contents::put);
+        return contents;
+    }
+
+    /**
+     * Read all files of this bundle in the order of the data file, e.g. to process every file. The data file is read
+     * sequentially in large chunks, and the next chunk is read in the background while the current one is processed,
+     * so a full pass is bound by the bandwidth of the storage rather than by seeks.
+     * @param consumer receives filename and read-only content of each file, the content is only valid until consumer
+     *                 returns because its memory is reused, copy it to keep it
+     * @throws IOException reading failed
+     */
+    void forEachFile(BiConsumer<String, ByteBuffer> consumer) throws IOException;
+
+    /**
+     * A {@link Stream} over all files of this bundle with their content, in the order of the data file. Content is read
+     * in chunks as the stream is consumed. The stream splits on offset ranges, so each worker of a
+     * {@link Stream#parallel() parallel} stream reads a contiguous part of the data file sequentially.
+     * @return all files, reading failures surface as {@link java.io.UncheckedIOException}
+     */
+    Stream<FileEntry> entries();
+
+    /**
+     * Read files in the background without returning their content, so that the operating system caches them and
+     * later reads don't wait for the disk, e.g. to warm up after a restart. Files are read in the order of the data
+     * file, step by step on the executor of this bundle, see
+     * {@link FileBundleIO.ModeStep#withReadExecutor(java.util.concurrent.Executor, int)}.
+     * @param filenames the files to read
+     * @param bytesPerSecond the bandwidth to stay below, {@link Prefetch#UNLIMITED} to read as fast as possible
+     * @return the progress, which also allows cancelling
+     * @throws IOException any file doesn't exist, nothing is read then
+     */
+    Prefetch prefetch(Collection<String> filenames, long bytesPerSecond) throws IOException;
+
+    /**
+     * Read all files that start with a prefix in the background, see {@link #prefetch(Collection, long)}.
+     * @param prefix the prefix, the empty String matches all filenames
+     * @param bytesPerSecond the bandwidth to stay below, {@link Prefetch#UNLIMITED} to read as fast as possible
+     * @return the progress
+     * @throws IOException reading the index failed
+     */
+    default Prefetch prefetch(String prefix, long bytesPerSecond) throws IOException {
+        return prefetch(listFilenames(prefix), bytesPerSecond);
+    }
+
+    /**
+     * Read all files of this bundle in the background, see {@link #prefetch(Collection, long)}.
+     * @param bytesPerSecond the bandwidth to stay below, {@link Prefetch#UNLIMITED} to read as fast as possible
+     * @return the progress
+     * @throws IOException reading the index failed
+     */
+    default Prefetch prefetchAll(long bytesPerSecond) throws IOException {
+        try (Stream<String> filenames = filenames()) {
+            return prefetch(filenames.collect(Collectors.toList()), bytesPerSecond);
+        }
+    }
+
+    /**
+     * Read a specific file without blocking the calling thread. Reads run on the executor of this bundle, with a
+     * bounded number of reads at a time, see {@link FileBundleIO.ModeStep#withReadExecutor(java.util.concurrent.Executor, int)}.
+     * @param filename the name of this file
+     * @return the requested file, completed exceptionally if the file doesn't exist or reading failed
+     */
+    CompletableFuture<ByteBuffer> readFileAsync(String filename);
+
+    /**
+     * Read a batch of files without blocking the calling thread, see {@link #readFiles(Collection)}. The batch counts as
+     * one read towards the bound of concurrent reads.
+     * @param filenames the files to read
+     * @return the content of each file, in the order of filenames
+     */
+    CompletableFuture<Map<String, ByteBuffer>> readFilesAsync(Collection<String> filenames);
+
+    /**
+     * Hand a buffer that was returned by {@link #readFile(String)} back to this bundle once it is consumed. Only
+     * {@link ReadStrategy#POSITIONAL_READ} reuses buffers, other strategies ignore this. Releasing is optional, but a
+     * buffer has a single owner: release it at most once and only the buffer itself, never a view of it, since the
+     * bundle may hand it to another reader right away.
+     * @param buffer the buffer, must not be used afterwards
+     */
+    default void releaseBuffer(ByteBuffer buffer) {
+    }
+
     /**
      * Check if a file is part of this bundle.
      * @param filename the name of this file
@@ -34,4 +221,24 @@ public interface ReadableFileBundle extends FileBundle {
      * @return all filenames
      */
     Stream<String> filenames();
+
+    /**
+     * A {@link Stream} over all filenames that start with a prefix, in lexicographic order. Use a prefix that ends with
+     * '/' to list the content of a "directory".
+     * @param prefix the prefix, the empty String matches all filenames
+     * @return matching filenames in sorted order
+     */
+    Stream<String> filenames(String prefix);
+
+    /**
+     * All filenames that start with a prefix, in lexicographic order.
+     * @param prefix the prefix, the empty String matches all filenames
+     * @return matching filenames in sorted order
+     * @see #filenames(String)
+     */
+    default List<String> listFilenames(String prefix) {
+        try (Stream<String> filenames = filenames(prefix)) {
+            return filenames.collect(Collectors.toList());
+        }
+    }
 }
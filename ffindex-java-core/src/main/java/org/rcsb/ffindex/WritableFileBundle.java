@@ -14,4 +14,12 @@ public interface WritableFileBundle extends FileBundle {
      * @throws IOException file already exists or writing failed
      */
     void writeFile(String filename, ByteBuffer byteBuffer) throws IOException;
+
+    /**
+     * Write all buffered content and index entries to the data and index file. Bundles buffer writes so that writing a
+     * small file doesn't cost a system call. Buffers are also written when they are full, on the first write after
+     * they held content for a second, and on {@link #close()}. Doesn't force the files to the storage device.
+     * @throws IOException writing failed
+     */
+    void flush() throws IOException;
 }
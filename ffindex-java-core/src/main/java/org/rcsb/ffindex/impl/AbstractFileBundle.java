@@ -1,26 +1,395 @@
 package org.rcsb.ffindex.impl;
 
+import org.rcsb.ffindex.Entries;
 import org.rcsb.ffindex.FileBundle;
+import org.rcsb.ffindex.FileEntry;
+import org.rcsb.ffindex.Prefetch;
+import org.rcsb.ffindex.ReadStrategy;
 
+import java.io.EOFException;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Shared functionality of a {@link FileBundle}.
  */
 public abstract class AbstractFileBundle implements FileBundle {
+    /**
+     * Batched reads also read gaps of up to this size between files, which is cheaper than another seek.
+     */
+    static final int MAX_GAP = 64 * 1024;
+    /**
+     * Batched reads don't merge files into regions larger than this.
+     */
+    static final int MAX_REGION = 16 * 1024 * 1024;
+    /**
+     * Full scans read the data file in chunks of this size, unless a single file is larger.
+     */
+    static final int SCAN_CHUNK = 8 * 1024 * 1024;
+    /**
+     * Streams of all files read the data file in chunks of this size, unless a single file is larger.
+     */
+    static final int STREAM_CHUNK = 1024 * 1024;
+    /**
+     * Prefetching reads this many bytes at a time, which is also the granularity of throttling.
+     */
+    static final int PREFETCH_STEP = 1024 * 1024;
+
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
     protected final Path dataPath;
     protected final Path indexPath;
     protected final RandomAccessFile dataFile;
     protected final FileChannel dataFileChannel;
+    private final MappedSegments segments;
+    private final BufferPool bufferPool;
+    private final BoundedExecutor readExecutor;
 
     AbstractFileBundle(Path dataPath, Path indexPath, String mode) throws FileNotFoundException {
         this.dataPath = dataPath;
         this.indexPath = indexPath;
         this.dataFile = new RandomAccessFile(dataPath.toFile(), mode);
         this.dataFileChannel = dataFile.getChannel();
+        this.segments = null;
+        this.bufferPool = null;
+        this.readExecutor = null;
+    }
+
+    AbstractFileBundle(Path dataPath, Path indexPath, String mode, ReadStrategy readStrategy, BoundedExecutor readExecutor) throws IOException {
+        this.dataPath = dataPath;
+        this.indexPath = indexPath;
+        this.dataFile = new RandomAccessFile(dataPath.toFile(), mode);
+        this.dataFileChannel = dataFile.getChannel();
+        this.readExecutor = readExecutor;
+        try {
+            if (readStrategy == ReadStrategy.MAPPED_SEGMENTS || readStrategy == ReadStrategy.IN_MEMORY) {
+                this.segments = new MappedSegments(dataFileChannel, MappedSegments.DEFAULT_SEGMENT_SHIFT, readStrategy == ReadStrategy.IN_MEMORY);
+            } else {
+                this.segments = null;
+            }
+            this.bufferPool = readStrategy == ReadStrategy.POSITIONAL_READ ? new BufferPool(BufferPool.DEFAULT_MAX_BYTES) : null;
+        } catch (IOException e) {
+            dataFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read-only view of a region of the data file, according to the {@link ReadStrategy} of this bundle.
+     * @param offset the start of the region
+     * @param length the length of the region
+     * @return a buffer positioned at 0
+     * @throws IOException reading failed
+     */
+    protected ByteBuffer readData(long offset, long length) throws IOException {
+        if (segments != null) {
+            return segments.slice(offset, length);
+        }
+        if (bufferPool != null) {
+            return readPositional(offset, (int) length);
+        }
+        return dataFileChannel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    private ByteBuffer readPositional(long offset, int length) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire(length);
+        try {
+            readFully(offset, length, buffer);
+        } catch (IOException e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Copy a region of the data file into a buffer, starting at its position, without allocating.
+     * @param offset the start of the region
+     * @param length the length of the region
+     * @param target the buffer to fill, its position is advanced by length
+     * @throws IOException reading failed
+     * @throws java.nio.BufferOverflowException if fewer than length bytes remain in the buffer, nothing is read then
+     */
+    protected void readData(long offset, int length, ByteBuffer target) throws IOException {
+        if (target.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        if (segments != null && segments.copy(offset, length, target)) {
+            return;
+        }
+        readFully(offset, length, target);
+    }
+
+    /**
+     * Copy a region of the data file into a buffer by positional reads, regardless of the {@link ReadStrategy}.
+     * @param offset the start of the region
+     * @param length the length of the region
+     * @param target the buffer to fill, must have at least length bytes remaining
+     * @throws IOException reading failed
+     */
+    void readFully(long offset, int length, ByteBuffer target) throws IOException {
+        int limit = target.limit();
+        int start = target.position();
+        target.limit(start + length);
+        try {
+            while (target.hasRemaining()) {
+                if (dataFileChannel.read(target, offset + target.position() - start) < 0) {
+                    throw new EOFException("Data file ends before " + (offset + length));
+                }
+            }
+        } finally {
+            target.limit(limit);
+        }
+    }
+
+    /**
+     * Read a batch of files in the order of their offsets. Unless the data file is mapped in segments, files that are
+     * close to each other are read as one region, so the data file is traversed sequentially with few large reads.
+     * @param filenames the files to read, duplicates are read once
+     * @param entries resolves filenames
+     * @param consumer receives filename and read-only content of each file
+     * @throws IOException any file doesn't exist or reading failed
+     */
+    protected void readData(Collection<String> filenames, Entries entries, BiConsumer<String, ByteBuffer> consumer) throws IOException {
+        ReadPlan plan = ReadPlan.of(filenames.toArray(new String[0]), entries, MAX_GAP, segments != null ? 0 : MAX_REGION)
+                .requireBufferSizes();
+        for (int region = 0; region < plan.regionCount(); region++) {
+            long start = plan.regionStart(region);
+            ByteBuffer buffer = segments != null ? null : readRegion(start, plan.regionEnd(region) - start);
+            for (int file = plan.firstFile(region); file < plan.endFile(region); file++) {
+                ByteBuffer content = buffer == null ?
+                        readData(plan.offset(file), plan.length(file)) :
+                        slice(buffer, plan.offset(file) - start, plan.length(file));
+                consumer.accept(plan.filename(file), content);
+            }
+        }
+    }
+
+    static ByteBuffer slice(ByteBuffer region, long position, int length) {
+        ByteBuffer view = region.duplicate();
+        view.position((int) position).limit((int) position + length);
+        return view.slice();
+    }
+
+    /**
+     * Read all files in the order of their offsets. Unless the data file is mapped in segments, the data file is read
+     * in chunks of up to {@link #SCAN_CHUNK} bytes, see {@link Scan}.
+     * @param entries all files
+     * @param consumer receives filename and read-only content of each file, which is only valid until consumer returns
+     * @throws IOException reading failed
+     */
+    protected void scanData(Entries entries, BiConsumer<String, ByteBuffer> consumer) throws IOException {
+        String[] filenames;
+        try (Stream<String> stream = entries.filenames()) {
+            filenames = stream.toArray(String[]::new);
+        }
+        if (segments != null) {
+            // already mapped, the operating system reads ahead on sequential access
+            readData(Arrays.asList(filenames), entries, consumer);
+            return;
+        }
+
+        ReadPlan plan = ReadPlan.of(filenames, entries, MAX_GAP, SCAN_CHUNK).requireBufferSizes();
+        new Scan(this, plan, SCAN_CHUNK).forEach(consumer);
+    }
+
+    /**
+     * Resolve a filename.
+     * @param entries resolves filenames
+     * @param filename the name of a file
+     * @return the index of this file
+     * @throws NoSuchFileException the file doesn't exist
+     */
+    static int requireIndex(Entries entries, String filename) throws NoSuchFileException {
+        int index = entries.getIndex(filename);
+        if (index == -1) {
+            throw new NoSuchFileException("No file with name '" + filename + "'");
+        }
+        return index;
+    }
+
+    /**
+     * The length of the content of a file that is read into a buffer.
+     * @param filename the name of this file
+     * @param entries resolves filenames
+     * @param index the index of this file
+     * @return a number of bytes
+     * @throws IOException the file is larger than a buffer can hold
+     */
+    protected static int bufferLength(String filename, Entries entries, int index) throws IOException {
+        long length = entries.getLongLength(index) - FILE_END_LENGTH;
+        if (length > Integer.MAX_VALUE) {
+            throw tooLarge(filename);
+        }
+        return (int) length;
+    }
+
+    static IOException tooLarge(String filename) {
+        return new IOException("File '" + filename + "' exceeds the size of a buffer, read it by range or as channel");
+    }
+
+    /**
+     * Whether the data file is mapped in segments, so that any region is read as a slice without a system call.
+     * @return true for {@link ReadStrategy#MAPPED_SEGMENTS} and {@link ReadStrategy#IN_MEMORY}
+     */
+    boolean isMapped() {
+        return segments != null;
+    }
+
+    /**
+     * Read-only view of a range within a file, see {@link #readData(long, long)}.
+     * @param offset the start of the file
+     * @param fileLength the length of the content of the file
+     * @param position the start of the range relative to the file
+     * @param length the maximum length of the range
+     * @return a buffer positioned at 0, shorter than length if the file ends before
+     * @throws IOException reading failed
+     */
+    protected ByteBuffer readData(long offset, long fileLength, long position, int length) throws IOException {
+        if (position < 0 || length < 0) {
+            throw new IllegalArgumentException("Position and length must not be negative, got " + position + " and " + length);
+        }
+        long n = Math.min(length, fileLength - position);
+        if (n <= 0) {
+            // mapping beyond the end of the data file would fail
+            return EMPTY_BUFFER.duplicate();
+        }
+        return readData(offset + position, n);
+    }
+
+    /**
+     * Read-only channel over a region of the data file that reads lazily, without mapping.
+     * @param offset the start of the region
+     * @param length the length of the region
+     * @return a new channel, which doesn't need to be closed
+     */
+    protected SeekableByteChannel openData(long offset, long length) {
+        return new FileRangeChannel(dataFileChannel, offset, length);
+    }
+
+    /**
+     * A region of the data file in a buffer of its own rather than one of the pool, or a mapping of it.
+     * @param offset the start of the region
+     * @param length the length of the region, at most the size of a buffer
+     * @return a read-only buffer positioned at 0
+     * @throws IOException reading failed
+     */
+    ByteBuffer readRegion(long offset, long length) throws IOException {
+        if (bufferPool == null) {
+            return dataFileChannel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+        // slices must never reach the pool
+        ByteBuffer region = ByteBuffer.allocate((int) length);
+        readFully(offset, (int) length, region);
+        return region.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * Transfer a region of the data file to a channel, letting the operating system copy the bytes where possible.
+     * @param offset the start of the region
+     * @param length the length of the region
+     * @param target the destination
+     * @return the number of bytes transferred, less than length only if target is a non-blocking channel that accepts
+     * no more bytes
+     * @throws IOException reading or writing failed
+     */
+    protected long transferData(long offset, long length, WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long n = dataFileChannel.transferTo(offset + transferred, length - transferred, target);
+            if (n == 0) {
+                if (target instanceof SelectableChannel && !((SelectableChannel) target).isBlocking()) {
+                    break;
+                }
+                if (offset + transferred >= dataFileChannel.size()) {
+                    throw new EOFException("Data file ends before " + (offset + length));
+                }
+            }
+            transferred += n;
+        }
+        return transferred;
+    }
+
+    /**
+     * Run a read operation on the executor of this bundle.
+     * @param read the operation
+     * @param <T> the type of the result
+     * @return the result of the operation
+     */
+    protected <T> CompletableFuture<T> readAsync(Callable<T> read) {
+        return readExecutor.submit(read);
+    }
+
+    /**
+     * Hand a buffer returned by a read operation back to this bundle. With {@link ReadStrategy#POSITIONAL_READ} its
+     * memory is reused by later reads, otherwise this does nothing.
+     * @param buffer the buffer, must not be used afterwards
+     */
+    public void releaseBuffer(ByteBuffer buffer) {
+        if (bufferPool != null) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Stream all files in the order of their offsets. The stream splits on offset ranges, so each worker of a parallel
+     * stream reads a contiguous part of the data file, in chunks of up to {@link #STREAM_CHUNK} bytes.
+     * @param entries all files
+     * @return a sequential stream
+     * @throws UncheckedIOException reading failed while the stream is consumed
+     */
+    protected Stream<FileEntry> streamData(Entries entries) {
+        String[] filenames;
+        try (Stream<String> stream = entries.filenames()) {
+            filenames = stream.toArray(String[]::new);
+        }
+        try {
+            ReadPlan plan = ReadPlan.of(filenames, entries, MAX_GAP, 0).requireBufferSizes();
+            return StreamSupport.stream(new EntrySpliterator(this, plan, 0, plan.fileCount()), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read files in the background, so that the operating system caches them, and discard the content. Files are read
+     * in the order of their offsets, in steps of {@link #PREFETCH_STEP} bytes, each of which is a task on the executor
+     * of this bundle. Steps are delayed to keep below the bandwidth.
+     * @param filenames the files to read
+     * @param entries resolves filenames
+     * @param bytesPerSecond the bandwidth, {@link Prefetch#UNLIMITED} to read as fast as possible
+     * @return the progress
+     * @throws IOException any file doesn't exist, nothing is read then
+     */
+    protected Prefetch prefetchData(Collection<String> filenames, Entries entries, long bytesPerSecond) throws IOException {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Bandwidth must be positive, got " + bytesPerSecond);
+        }
+        ReadPlan plan = ReadPlan.of(filenames.toArray(new String[0]), entries, MAX_GAP, MAX_REGION);
+        long totalBytes = 0;
+        for (int region = 0; region < plan.regionCount(); region++) {
+            totalBytes += plan.regionEnd(region) - plan.regionStart(region);
+        }
+        Prefetch prefetch = new Prefetch(totalBytes);
+        new Prefetcher(this, plan, prefetch, bytesPerSecond).schedule();
+        return prefetch;
     }
 
     @Override
@@ -0,0 +1,139 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.Entries;
+import org.rcsb.ffindex.FileEntry;
+import org.rcsb.ffindex.Prefetch;
+import org.rcsb.ffindex.ReadStrategy;
+import org.rcsb.ffindex.ReadableFileBundle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Shared functionality of a {@link ReadableFileBundle}: all read operations resolve filenames by the entries of the
+ * bundle and read the data file according to its {@link ReadStrategy}.
+ */
+public abstract class AbstractReadableFileBundle extends AbstractFileBundle implements ReadableFileBundle {
+    AbstractReadableFileBundle(Path dataPath, Path indexPath, String mode, ReadStrategy readStrategy, BoundedExecutor readExecutor) throws IOException {
+        super(dataPath, indexPath, mode, readStrategy, readExecutor);
+    }
+
+    /**
+     * The entries of this bundle.
+     * @return the current entries
+     */
+    abstract Entries getEntries();
+
+    /**
+     * Resolve a filename.
+     * @param filename the name of a file
+     * @return the index of this file in the entries of this bundle
+     * @throws NoSuchFileException the file doesn't exist
+     */
+    int requireIndex(String filename) throws NoSuchFileException {
+        return requireIndex(getEntries(), filename);
+    }
+
+    @Override
+    public ByteBuffer readFile(String filename) throws IOException {
+        int index = requireIndex(filename);
+        return readData(getEntries().getOffset(index), bufferLength(filename, getEntries(), index));
+    }
+
+    @Override
+    public int readFile(String filename, ByteBuffer target) throws IOException {
+        int index = requireIndex(filename);
+        int length = bufferLength(filename, getEntries(), index);
+        readData(getEntries().getOffset(index), length, target);
+        return length;
+    }
+
+    @Override
+    public long transferFile(String filename, WritableByteChannel target) throws IOException {
+        int index = requireIndex(filename);
+        return transferData(getEntries().getOffset(index), getEntries().getLongLength(index) - FILE_END_LENGTH, target);
+    }
+
+    @Override
+    public void readFiles(Collection<String> filenames, BiConsumer<String, ByteBuffer> consumer) throws IOException {
+        readData(filenames, getEntries(), consumer);
+    }
+
+    @Override
+    public void forEachFile(BiConsumer<String, ByteBuffer> consumer) throws IOException {
+        scanData(getEntries(), consumer);
+    }
+
+    @Override
+    public Stream<FileEntry> entries() {
+        return streamData(getEntries());
+    }
+
+    @Override
+    public Prefetch prefetch(Collection<String> filenames, long bytesPerSecond) throws IOException {
+        return prefetchData(filenames, getEntries(), bytesPerSecond);
+    }
+
+    @Override
+    public int fileLength(String filename) throws IOException {
+        return bufferLength(filename, getEntries(), requireIndex(filename));
+    }
+
+    @Override
+    public long fileLongLength(String filename) throws IOException {
+        return getEntries().getLongLength(requireIndex(filename)) - FILE_END_LENGTH;
+    }
+
+    @Override
+    public ByteBuffer readFileRange(String filename, long position, int length) throws IOException {
+        int index = requireIndex(filename);
+        return readData(getEntries().getOffset(index), getEntries().getLongLength(index) - FILE_END_LENGTH, position, length);
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(String filename) throws IOException {
+        int index = requireIndex(filename);
+        return openData(getEntries().getOffset(index), getEntries().getLongLength(index) - FILE_END_LENGTH);
+    }
+
+    @Override
+    public CompletableFuture<ByteBuffer> readFileAsync(String filename) {
+        return readAsync(() -> readFile(filename));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, ByteBuffer>> readFilesAsync(Collection<String> filenames) {
+        List<String> batch = List.copyOf(filenames);
+        return readAsync(() -> readFiles(batch));
+    }
+
+    @Override
+    public boolean containsFile(String filename) {
+        return getEntries().getIndex(filename) != -1;
+    }
+
+    @Override
+    public int fileCount() {
+        return getEntries().size();
+    }
+
+    @Override
+    public Stream<String> filenames() {
+        return getEntries().filenames();
+    }
+
+    @Override
+    public Stream<String> filenames(String prefix) {
+        return getEntries().filenames(prefix);
+    }
+}
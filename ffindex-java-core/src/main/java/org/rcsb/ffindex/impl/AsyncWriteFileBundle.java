@@ -0,0 +1,221 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.AsyncWritableFileBundle;
+import org.rcsb.ffindex.WritableFileBundle;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes files to another bundle on a dedicated I/O thread. The thread takes all queued files at once, writes them and
+ * flushes the bundle once per batch, so a busy queue turns into few large writes (see {@link WriteOnlyFileBundle}).
+ * Futures of a batch complete after its flush, in the order of submission, on a separate completion thread: dependent
+ * actions of a producer never delay writing. The wrapped bundle is closed by {@link #close()}, after all queued files
+ * were written. Thread-safe.
+ */
+public class AsyncWriteFileBundle implements AsyncWritableFileBundle {
+    /**
+     * The I/O thread writes at most this many files between two flushes.
+     */
+    static final int MAX_BATCH = 4096;
+    private static final Task CLOSE = new Task(null, null);
+
+    private final WritableFileBundle bundle;
+    private final BlockingQueue<Task> queue;
+    private final Thread writer;
+    // a single thread keeps futures completing in order
+    private final ExecutorService completer;
+    private final Object submitLock = new Object();
+    private CompletableFuture<Void> last;
+    private boolean closed;
+
+    /**
+     * Write files asynchronously.
+     * @param bundle receives the files, written by a single thread
+     * @param maxPendingFiles the capacity of the queue, producers block once this many files wait to be written
+     */
+    public AsyncWriteFileBundle(WritableFileBundle bundle, int maxPendingFiles) {
+        if (maxPendingFiles <= 0) {
+            throw new IllegalArgumentException("Pending files must be positive, got " + maxPendingFiles);
+        }
+        this.bundle = bundle;
+        this.queue = new ArrayBlockingQueue<>(maxPendingFiles);
+        this.last = CompletableFuture.completedFuture(null);
+        this.completer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ffindex-write-completion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::run, "ffindex-write");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> writeFileAsync(String filename, ByteBuffer byteBuffer) throws IOException {
+        Task task = new Task(filename, byteBuffer);
+        // holding the lock while waiting keeps the order of the queue and of last consistent
+        synchronized (submitLock) {
+            if (closed) {
+                throw new IllegalStateException("Bundle is closed");
+            }
+            put(task);
+            last = task.future;
+        }
+        return task.future;
+    }
+
+    private void put(Task task) throws InterruptedIOException {
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for space in the write queue");
+        }
+    }
+
+    @Override
+    public void writeFile(String filename, ByteBuffer byteBuffer) throws IOException {
+        CompletableFuture<Void> future = writeFileAsync(filename, byteBuffer);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing '" + filename + "'");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Failed to write '" + filename + "'", e.getCause());
+        }
+    }
+
+    @Override
+    public void drain() throws IOException {
+        CompletableFuture<Void> future;
+        synchronized (submitLock) {
+            future = last;
+        }
+        try {
+            // futures complete in order, so all earlier files are written once the last one is
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while draining the write queue");
+        } catch (ExecutionException e) {
+            // failed writes count as written, callers learn about them through their futures
+        }
+    }
+
+    /**
+     * Wait until all queued files were written. Every batch is flushed by the I/O thread, so there is nothing else to
+     * write.
+     * @throws IOException interrupted while waiting
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    private void run() {
+        List<Task> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // only close stops this thread
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+
+            Throwable[] errors = new Throwable[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                Task task = batch.get(i);
+                if (task == CLOSE) {
+                    running = false;
+                    continue;
+                }
+                try {
+                    bundle.writeFile(task.filename, task.content);
+                } catch (Throwable t) {
+                    errors[i] = t;
+                }
+            }
+            Throwable flushError = null;
+            try {
+                bundle.flush();
+            } catch (Throwable t) {
+                flushError = t;
+            }
+            List<Task> completed = batch;
+            Throwable batchError = flushError;
+            completer.execute(() -> {
+                for (int i = 0; i < completed.size(); i++) {
+                    Throwable error = errors[i] != null ? errors[i] : batchError;
+                    if (error != null) {
+                        completed.get(i).future.completeExceptionally(error);
+                    } else {
+                        completed.get(i).future.complete(null);
+                    }
+                }
+            });
+            batch = new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (submitLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            put(CLOSE);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while draining the write queue");
+        }
+        // completions that are still queued run before the thread ends
+        completer.shutdown();
+        bundle.close();
+    }
+
+    @Override
+    public Path getDataPath() {
+        return bundle.getDataPath();
+    }
+
+    @Override
+    public Path getIndexPath() {
+        return bundle.getIndexPath();
+    }
+
+    private static final class Task {
+        private final String filename;
+        private final ByteBuffer content;
+        private final CompletableFuture<Void> future;
+
+        Task(String filename, ByteBuffer content) {
+            this.filename = filename;
+            this.content = content;
+            this.future = new CompletableFuture<>();
+        }
+    }
+}
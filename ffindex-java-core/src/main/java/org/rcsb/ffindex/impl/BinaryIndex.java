@@ -0,0 +1,201 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.FileBundle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * A binary sidecar of a text index file that holds a ready-to-use {@link CompactEntries} object. Loading it maps the
+ * file and involves no parsing. The sidecar records size and modification time of the text index it was created from
+ * and is considered stale once these change.
+ *
+ * <p>Layout (little-endian): a 64 byte header of magic, version, header checksum, source size, source modification
+ * time, line count, distinct filename count, hash table capacity, arena size and body checksum, followed by the offset
+ * table ({@code long}), length table ({@code int}), filename start table ({@code int}), hash table ({@code int}) and the
+ * filename arena. The body checksum (CRC32C) covers all sections, so a sidecar with a corrupted body is rejected when it
+ * is mapped rather than returning garbage offsets.
+ */
+public final class BinaryIndex {
+    private static final long MAGIC = 0x4e49425844494646L; // "FFIDXBIN" read as little-endian long
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int CHECKSUM_POSITION = 12;
+    private static final int CHECKSUMMED_POSITION = 16;
+    private static final int CHECKSUMMED_LENGTH = 44;
+    private static final int BODY_CHECKSUM_POSITION = 48;
+
+    private BinaryIndex() {
+        // deny instantiation
+    }
+
+    /**
+     * Load the entries of a text index through its binary sidecar. If the sidecar is missing, corrupt or stale then the
+     * text index is parsed and the sidecar is regenerated. Failure to write the sidecar isn't fatal.
+     * @param indexPath the text index
+     * @param binaryIndexPath the location of the sidecar
+     * @return the entries
+     * @throws IOException reading the text index failed
+     */
+    public static CompactEntries load(Path indexPath, Path binaryIndexPath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        CompactEntries mapped = map(binaryIndexPath, attributes.size(), attributes.lastModifiedTime().toMillis());
+        if (mapped != null) {
+            return mapped;
+        }
+
+        CompactEntries parsed = CompactEntries.of(indexPath);
+        try {
+            write(parsed, binaryIndexPath, attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            // the sidecar is an optimization -- e.g. a read-only location is no reason to fail
+        }
+        return parsed;
+    }
+
+    /**
+     * Parse a text index and write its binary sidecar.
+     * @param indexPath the text index
+     * @param binaryIndexPath the location of the sidecar
+     * @throws IOException reading or writing failed
+     */
+    public static void write(Path indexPath, Path binaryIndexPath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        write(CompactEntries.of(indexPath), binaryIndexPath, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    static void write(CompactEntries entries, Path binaryIndexPath, long sourceSize, long sourceModified) throws IOException {
+        int count = entries.count;
+        int capacity = entries.table.capacity();
+        int nameBytes = entries.nameStarts.get(count);
+        Layout layout = new Layout(count, capacity, nameBytes);
+        if (layout.fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Binary index would exceed 2 GB");
+        }
+
+        // write to a temporary file first so that readers never observe a partially written sidecar
+        Path tmpPath = binaryIndexPath.resolveSibling(binaryIndexPath.getFileName() + FileBundle.TMP_EXT);
+        try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, layout.fileSize);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putLong(0, MAGIC)
+                    .putInt(8, VERSION)
+                    .putLong(16, sourceSize)
+                    .putLong(24, sourceModified)
+                    .putInt(32, count)
+                    .putInt(36, entries.size)
+                    .putInt(40, capacity)
+                    .putInt(44, nameBytes);
+
+            section(out, layout.offsets, Long.BYTES * count).asLongBuffer().put(entries.offsets.duplicate().clear().limit(count));
+            section(out, layout.lengths, Integer.BYTES * count).asIntBuffer().put(entries.lengths.duplicate().clear().limit(count));
+            section(out, layout.nameStarts, Integer.BYTES * (count + 1)).asIntBuffer().put(entries.nameStarts.duplicate().clear().limit(count + 1));
+            section(out, layout.table, Integer.BYTES * capacity).asIntBuffer().put(entries.table.duplicate().clear());
+            section(out, layout.names, nameBytes).put(entries.names.duplicate().clear().limit(nameBytes));
+            out.putInt(BODY_CHECKSUM_POSITION, bodyChecksum(out));
+            out.putInt(CHECKSUM_POSITION, checksum(out));
+            out.force();
+        }
+        Files.move(tmpPath, binaryIndexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map a binary sidecar.
+     * @param binaryIndexPath the location of the sidecar
+     * @param sourceSize the expected size of the text index
+     * @param sourceModified the expected modification time of the text index
+     * @return the entries, or null if the sidecar is missing, corrupt or stale
+     * @throws IOException reading failed
+     */
+    static CompactEntries map(Path binaryIndexPath, long sourceSize, long sourceModified) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(binaryIndexPath, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                return null;
+            }
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        if (in.getLong(0) != MAGIC || in.getInt(8) != VERSION || in.getInt(CHECKSUM_POSITION) != checksum(in)) {
+            return null;
+        }
+        if (in.getLong(16) != sourceSize || in.getLong(24) != sourceModified) {
+            return null;
+        }
+
+        int count = in.getInt(32);
+        int size = in.getInt(36);
+        int capacity = in.getInt(40);
+        int nameBytes = in.getInt(44);
+        if (count < 0 || size < 0 || capacity <= 0 || Integer.bitCount(capacity) != 1 || nameBytes < 0) {
+            return null;
+        }
+        Layout layout = new Layout(count, capacity, nameBytes);
+        if (layout.fileSize != in.capacity() || in.getInt(BODY_CHECKSUM_POSITION) != bodyChecksum(in)) {
+            return null;
+        }
+
+        return new CompactEntries(count,
+                size,
+                section(in, layout.names, nameBytes),
+                section(in, layout.nameStarts, Integer.BYTES * (count + 1)).asIntBuffer(),
+                section(in, layout.offsets, Long.BYTES * count).asLongBuffer(),
+                section(in, layout.lengths, Integer.BYTES * count).asIntBuffer(),
+                section(in, layout.table, Integer.BYTES * capacity).asIntBuffer());
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, long position, int length) {
+        return buffer.duplicate()
+                .position((int) position)
+                .limit((int) position + length)
+                .slice()
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int checksum(ByteBuffer header) {
+        CRC32 crc = new CRC32();
+        crc.update(section(header, CHECKSUMMED_POSITION, CHECKSUMMED_LENGTH));
+        return (int) crc.getValue();
+    }
+
+    private static int bodyChecksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(section(buffer, HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Positions of all sections.
+     */
+    private static class Layout {
+        final long offsets;
+        final long lengths;
+        final long nameStarts;
+        final long table;
+        final long names;
+        final long fileSize;
+
+        Layout(int count, int capacity, int nameBytes) {
+            this.offsets = HEADER_SIZE;
+            this.lengths = offsets + (long) Long.BYTES * count;
+            this.nameStarts = lengths + (long) Integer.BYTES * count;
+            this.table = nameStarts + (long) Integer.BYTES * (count + 1);
+            this.names = table + (long) Integer.BYTES * capacity;
+            this.fileSize = names + nameBytes;
+        }
+    }
+}
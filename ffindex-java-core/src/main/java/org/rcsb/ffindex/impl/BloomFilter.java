@@ -0,0 +1,101 @@
+package org.rcsb.ffindex.impl;
+
+import java.util.Iterator;
+
+/**
+ * A blocked Bloom filter over filenames. All bits of a key are placed in one block of 512 bits, so a query touches a
+ * single cache line. Answers whether a filename is definitely absent, without false negatives. Keys are derived from
+ * {@link String#hashCode()}, which limits the false positive probability to roughly the number of filenames / 2^32.
+ */
+final class BloomFilter {
+    private static final long SEED = 0x5bd1e9955bd1e995L;
+    private static final int BLOCK_WORDS = 8;
+    private static final int BLOCK_BITS = BLOCK_WORDS * Long.SIZE;
+
+    private final long[] bits;
+    private final int blockCount;
+    private final int hashCount;
+
+    private BloomFilter(int blockCount, int hashCount) {
+        this.bits = new long[blockCount * BLOCK_WORDS];
+        this.blockCount = blockCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Create a filter over a collection of filenames.
+     * @param filenames the filenames to add
+     * @param expectedCount the number of filenames
+     * @param falsePositiveProbability the desired probability of a false positive answer, in (0, 1)
+     * @return the filter
+     */
+    static BloomFilter of(Iterator<String> filenames, int expectedCount, double falsePositiveProbability) {
+        if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+            throw new IllegalArgumentException("False positive probability must be in (0, 1), got " + falsePositiveProbability);
+        }
+        // blocking costs some accuracy, which is compensated for by slightly more bits
+        double bitsPerKey = -Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)) * 1.1;
+        int hashCount = (int) Math.max(1, Math.min(16, Math.round(bitsPerKey / 1.1 * Math.log(2))));
+        long blocks = Math.max(1, (long) Math.ceil(Math.max(1, expectedCount) * bitsPerKey / BLOCK_BITS));
+        if (blocks > Integer.MAX_VALUE / BLOCK_WORDS) {
+            throw new IllegalArgumentException("Bloom filter would exceed the maximum array size");
+        }
+
+        BloomFilter filter = new BloomFilter((int) blocks, hashCount);
+        while (filenames.hasNext()) {
+            filter.add(hash(filenames.next()));
+        }
+        return filter;
+    }
+
+    private static long hash(String filename) {
+        // String caches its hash code, so probing several bundles for the same filename hashes its characters once
+        return Hashing.mix64(filename.hashCode() + SEED);
+    }
+
+    private void add(long hash) {
+        int block = block(hash) * BLOCK_WORDS;
+        // bits within the block must not depend on the bits that selected the block
+        long bitHash = Hashing.mix64(hash);
+        int h = (int) bitHash;
+        int step = (int) (bitHash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = h & (BLOCK_BITS - 1);
+            bits[block + (bit >>> 6)] |= 1L << bit;
+            h += step;
+        }
+    }
+
+    /**
+     * Check whether a filename may be part of the filter.
+     * @param filename the filename
+     * @return false if the filename is definitely absent
+     */
+    boolean mightContain(String filename) {
+        long hash = hash(filename);
+        int block = block(hash) * BLOCK_WORDS;
+        long bitHash = Hashing.mix64(hash);
+        int h = (int) bitHash;
+        int step = (int) (bitHash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = h & (BLOCK_BITS - 1);
+            if ((bits[block + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+            h += step;
+        }
+        return true;
+    }
+
+    private int block(long hash) {
+        return (int) (((hash >>> 32) * blockCount) >>> 32);
+    }
+
+    /**
+     * The memory required by the filter.
+     * @return the number of bits
+     */
+    long sizeInBits() {
+        return (long) bits.length * Long.SIZE;
+    }
+}
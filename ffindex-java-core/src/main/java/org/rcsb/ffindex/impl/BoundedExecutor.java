@@ -0,0 +1,141 @@
+package org.rcsb.ffindex.impl;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks on an executor, but never more than a fixed number at a time. Excess tasks wait in a queue without
+ * blocking the submitting thread. Tasks whose future was cancelled while waiting are skipped. Thread-safe.
+ */
+public final class BoundedExecutor {
+    /**
+     * The default number of tasks that run at the same time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 32;
+
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final Queue<Task<?>> pending;
+    private final AtomicInteger running;
+
+    /**
+     * Run tasks on an executor.
+     * @param executor runs the tasks, e.g. a thread pool or a virtual thread per task executor
+     * @param maxConcurrency the maximum number of tasks that run at the same time
+     */
+    public BoundedExecutor(Executor executor, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive, got " + maxConcurrency);
+        }
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.running = new AtomicInteger();
+    }
+
+    /**
+     * Run tasks on a shared pool of daemon threads, with {@link #DEFAULT_MAX_CONCURRENCY}.
+     * @return a new instance
+     */
+    public static BoundedExecutor ofDefault() {
+        return new BoundedExecutor(DefaultPool.EXECUTOR, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Schedule a task.
+     * @param callable the task
+     * @param <T> the type of the result
+     * @return the result, completed exceptionally if the task failed or was rejected by the executor
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> callable) {
+        Task<T> task = new Task<>(callable);
+        pending.add(task);
+        drain();
+        return task.future;
+    }
+
+    private void drain() {
+        while (!pending.isEmpty()) {
+            int n = running.get();
+            if (n >= maxConcurrency) {
+                // a running task drains the queue when it completes
+                return;
+            }
+            if (!running.compareAndSet(n, n + 1)) {
+                continue;
+            }
+
+            Task<?> task = pending.poll();
+            if (task == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        running.decrementAndGet();
+                        drain();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.decrementAndGet();
+                task.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * The maximum number of tasks that run at the same time.
+     * @return an int
+     */
+    int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * The number of tasks that currently run.
+     * @return an int
+     */
+    int getRunning() {
+        return running.get();
+    }
+
+    private static final class Task<T> {
+        private final Callable<T> callable;
+        private final CompletableFuture<T> future;
+
+        Task(Callable<T> callable) {
+            this.callable = callable;
+            this.future = new CompletableFuture<>();
+        }
+
+        void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(callable.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static final class DefaultPool {
+        // created on first use
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ffindex-read");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package org.rcsb.ffindex.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of direct buffers in power-of-2 size classes. Buffers are handed out with their limit set to the
+ * requested length. Requests beyond the largest size class are served by heap buffers that are never pooled. Released
+ * buffers are dropped once the pool holds its maximum number of bytes. The pool doesn't track the buffers it handed
+ * out: whoever acquired a buffer owns it and may release it at most once, or not at all. Thread-safe.
+ */
+final class BufferPool {
+    static final int MIN_SHIFT = 12;
+    static final int MAX_SHIFT = 20;
+    static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private final List<Queue<ByteBuffer>> classes;
+    private final long maxBytes;
+    private final AtomicLong pooledBytes;
+
+    BufferPool(long maxBytes) {
+        this.classes = new ArrayList<>(MAX_SHIFT - MIN_SHIFT + 1);
+        for (int shift = MIN_SHIFT; shift <= MAX_SHIFT; shift++) {
+            classes.add(new ConcurrentLinkedQueue<>());
+        }
+        this.maxBytes = maxBytes;
+        this.pooledBytes = new AtomicLong();
+    }
+
+    /**
+     * Acquire a buffer.
+     * @param length the number of bytes needed
+     * @return a buffer with position 0 and limit length
+     */
+    ByteBuffer acquire(int length) {
+        int shift = shift(length);
+        if (shift > MAX_SHIFT) {
+            return ByteBuffer.allocate(length);
+        }
+
+        ByteBuffer buffer = classes.get(shift - MIN_SHIFT).poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(1 << shift);
+        } else {
+            pooledBytes.addAndGet(-buffer.capacity());
+        }
+        buffer.clear().limit(length);
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool. Buffers that can't have been handed out by a pool are ignored. Releasing a buffer
+     * twice isn't detected and would hand it to two owners.
+     * @param buffer the buffer, must not be used afterwards
+     */
+    void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || buffer.isReadOnly() || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int shift = Integer.numberOfTrailingZeros(capacity);
+        if (shift < MIN_SHIFT || shift > MAX_SHIFT) {
+            return;
+        }
+
+        if (pooledBytes.addAndGet(capacity) > maxBytes) {
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+        classes.get(shift - MIN_SHIFT).offer(buffer);
+    }
+
+    /**
+     * The number of bytes held by released buffers.
+     * @return a long
+     */
+    long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    private static int shift(int length) {
+        return Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, length) - 1));
+    }
+}
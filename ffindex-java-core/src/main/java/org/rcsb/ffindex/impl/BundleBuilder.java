@@ -0,0 +1,296 @@
+package org.rcsb.ffindex.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Builds bundles from a directory tree or a tar stream. Content is transferred into the data file by
+ * {@link FileChannel#transferFrom}, so files never pass through the Java heap.
+ */
+public final class BundleBuilder {
+    private static final int BLOCK_SIZE = 512;
+    private static final int SKIP_BUFFER_SIZE = 64 * 1024;
+
+    private BundleBuilder() {
+        // deny instantiation
+    }
+
+    /**
+     * Transfer files on a shared pool of daemon threads, separate from the pool that runs asynchronous reads, so that
+     * bundling doesn't delay reads.
+     * @param maxConcurrency the maximum number of transfers that run at the same time
+     * @return a new instance
+     */
+    public static BoundedExecutor defaultExecutor(int maxConcurrency) {
+        return new BoundedExecutor(TransferPool.EXECUTOR, maxConcurrency);
+    }
+
+    /**
+     * Add all regular files below a directory. The calling thread traverses the directory, while the executor opens and
+     * transfers files concurrently. Traversal waits while the executor runs its maximum number of transfers, so
+     * memory doesn't grow with the size of the tree. Filenames are relative to the directory, with '/' as separator.
+     * Index entries follow the order in which transfers complete. Once a transfer fails, traversal stops and running
+     * transfers complete before this method returns.
+     * @param source the directory
+     * @param bundle receives the files
+     * @param filter accepts the filenames to add
+     * @param executor runs transfers
+     * @return the number of added files
+     * @throws IOException traversing, reading or writing failed
+     */
+    public static int addDirectory(Path source, ConcurrentWriteFileBundle bundle, Predicate<String> filter, BoundedExecutor executor) throws IOException {
+        int maxConcurrency = executor.getMaxConcurrency();
+        Semaphore permits = new Semaphore(maxConcurrency);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        int count = 0;
+        try {
+            try (Stream<Path> stream = Files.walk(source)) {
+                Iterator<Path> paths = stream.iterator();
+                while (failure.get() == null && paths.hasNext()) {
+                    Path path = paths.next();
+                    if (!Files.isRegularFile(path)) {
+                        continue;
+                    }
+                    String filename = filename(source.relativize(path));
+                    if (!filter.test(filename)) {
+                        continue;
+                    }
+
+                    permits.acquire();
+                    if (failure.get() != null) {
+                        // failed while waiting
+                        permits.release();
+                        break;
+                    }
+                    executor.submit(() -> {
+                        try (FileChannel channel = FileChannel.open(path)) {
+                            bundle.writeFile(filename, channel, channel.size());
+                        }
+                        return null;
+                    }).whenComplete((result, t) -> {
+                        if (t != null) {
+                            failure.compareAndSet(null, t);
+                        }
+                        permits.release();
+                    });
+                    count++;
+                }
+            }
+            // all permits are back once all transfers completed
+            permits.acquire(maxConcurrency);
+        } catch (InterruptedException e) {
+            // running transfers can't be stopped, the bundle must not be closed while they write to it
+            permits.acquireUninterruptibly(maxConcurrency);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while bundling " + source);
+        } catch (IOException | RuntimeException e) {
+            permits.acquireUninterruptibly(maxConcurrency);
+            throw e;
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        }
+        if (t != null) {
+            throw new IOException("Failed to bundle " + source, t);
+        }
+        return count;
+    }
+
+    private static String filename(Path relative) {
+        StringBuilder filename = new StringBuilder();
+        for (Path element : relative) {
+            if (filename.length() > 0) {
+                filename.append('/');
+            }
+            filename.append(element);
+        }
+        return filename.toString();
+    }
+
+    /**
+     * Add all regular files of a tar stream (ustar, pax and GNU long names). Entries are read in the order of the
+     * stream. Streams of a {@link java.io.FileInputStream} are transferred without copying content into the Java heap,
+     * other streams are copied through a small buffer. Directories, links and other special entries are skipped.
+     * @param source the tar stream, positioned at the first header, not closed
+     * @param bundle receives the files
+     * @param filter accepts the filenames to add
+     * @return the number of added files
+     * @throws IOException the stream is malformed, reading or writing failed
+     */
+    public static int addTar(InputStream source, ConcurrentWriteFileBundle bundle, Predicate<String> filter) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(source);
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_SIZE);
+        ByteBuffer skipBuffer = ByteBuffer.allocate(SKIP_BUFFER_SIZE);
+        String longName = null;
+        int count = 0;
+        while (true) {
+            header.clear();
+            if (!readBlock(channel, header)) {
+                // some writers omit the end-of-archive blocks
+                return count;
+            }
+            if (isZero(header)) {
+                return count;
+            }
+
+            byte type = header.get(156);
+            long size = parseSize(header);
+            String name = longName != null ? longName : path(header);
+            longName = null;
+            long padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+            if (type == 'x' || type == 'L') {
+                // extended header or GNU long name of the next entry
+                if (size > Integer.MAX_VALUE - BLOCK_SIZE) {
+                    throw new IOException("Tar header of " + size + " bytes is too large");
+                }
+                ByteBuffer extension = ByteBuffer.allocate((int) (size + padding));
+                readFully(channel, extension);
+                longName = type == 'L' ? normalize(cString(extension.array(), 0, (int) size)) : paxPath(extension.array(), (int) size);
+            } else if ((type == '0' || type == 0 || type == '7') && filter.test(name)) {
+                bundle.writeFile(name, channel, size);
+                skip(channel, skipBuffer, padding);
+                count++;
+            } else {
+                skip(channel, skipBuffer, size + padding);
+            }
+        }
+    }
+
+    private static boolean readBlock(ReadableByteChannel channel, ByteBuffer block) throws IOException {
+        while (block.hasRemaining()) {
+            if (channel.read(block) < 0) {
+                if (block.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Tar stream ends within a header");
+            }
+        }
+        return true;
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Tar stream ends within an entry");
+            }
+        }
+    }
+
+    private static void skip(ReadableByteChannel channel, ByteBuffer buffer, long length) throws IOException {
+        while (length > 0) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), length));
+            readFully(channel, buffer);
+            length -= buffer.limit();
+        }
+    }
+
+    private static boolean isZero(ByteBuffer block) {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            if (block.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseSize(ByteBuffer header) throws IOException {
+        long size = 0;
+        if ((header.get(124) & 0x80) != 0) {
+            // base-256 encoding of large sizes
+            for (int i = 125; i < 136; i++) {
+                size = (size << 8) | (header.get(i) & 0xFF);
+            }
+            return size;
+        }
+        for (int i = 124; i < 136; i++) {
+            byte b = header.get(i);
+            if (b == 0 || b == ' ') {
+                if (size > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Malformed size in tar header");
+            }
+            size = (size << 3) + (b - '0');
+        }
+        return size;
+    }
+
+    private static String path(ByteBuffer header) {
+        byte[] bytes = header.array();
+        String name = cString(bytes, 0, 100);
+        // ustar splits long names into prefix and name
+        if (bytes[257] == 'u' && bytes[258] == 's' && bytes[259] == 't' && bytes[260] == 'a' && bytes[261] == 'r' && bytes[345] != 0) {
+            name = cString(bytes, 345, 155) + "/" + name;
+        }
+        return normalize(name);
+    }
+
+    private static String paxPath(byte[] records, int length) throws IOException {
+        // records are formatted as "<length> <key>=<value>\n"
+        int position = 0;
+        String path = null;
+        while (position < length) {
+            int space = position;
+            while (space < length && records[space] != ' ') {
+                space++;
+            }
+            int recordLength;
+            try {
+                recordLength = Integer.parseInt(new String(records, position, space - position, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed pax header", e);
+            }
+            if (recordLength <= 0 || position + recordLength > length) {
+                throw new IOException("Malformed pax header");
+            }
+            String record = new String(records, space + 1, position + recordLength - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                path = normalize(record.substring(5));
+            }
+            position += recordLength;
+        }
+        return path;
+    }
+
+    private static String cString(byte[] bytes, int offset, int maxLength) {
+        int end = offset;
+        while (end < offset + maxLength && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String normalize(String name) {
+        return name.startsWith("./") ? name.substring(2) : name;
+    }
+
+    private static final class TransferPool {
+        // created on first use
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ffindex-bundle");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
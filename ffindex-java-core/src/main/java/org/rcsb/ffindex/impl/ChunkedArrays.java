@@ -0,0 +1,142 @@
+package org.rcsb.ffindex.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable storage of primitive values. Values are stored in fixed-size chunks, so growing never copies existing
+ * values and never needs twice the memory for a moment, unlike an {@link java.util.ArrayList}.
+ */
+final class ChunkedArrays {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private ChunkedArrays() {
+        // deny instantiation
+    }
+
+    /**
+     * Growable list of long values.
+     */
+    static class Longs {
+        private long[][] chunks = new long[0][];
+        private int size;
+
+        void add(long value) {
+            int chunk = size >>> CHUNK_BITS;
+            if (chunk == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunk + 1);
+                chunks[chunk] = new long[CHUNK_SIZE];
+            }
+            chunks[chunk][size & CHUNK_MASK] = value;
+            size++;
+        }
+
+        long get(int index) {
+            return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Growable list of int values.
+     */
+    static class Ints {
+        private int[][] chunks = new int[0][];
+        private int size;
+
+        void add(int value) {
+            int chunk = size >>> CHUNK_BITS;
+            if (chunk == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunk + 1);
+                chunks[chunk] = new int[CHUNK_SIZE];
+            }
+            chunks[chunk][size & CHUNK_MASK] = value;
+            size++;
+        }
+
+        int get(int index) {
+            return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Append-only arena of byte sequences. A sequence never spans two chunks, it is addressed by the long returned from
+     * {@link #add(byte[])} and its length.
+     */
+    static class Bytes {
+        private static final int BYTE_CHUNK_BITS = 20;
+        private static final int BYTE_CHUNK_SIZE = 1 << BYTE_CHUNK_BITS;
+        private byte[][] chunks = new byte[0][];
+        private int position;
+
+        long add(byte[] bytes) {
+            long address = reserve(bytes.length);
+            System.arraycopy(bytes, 0, chunks[chunks.length - 1], (int) address, bytes.length);
+            return address;
+        }
+
+        /**
+         * Add the characters of a String, which must only contain ASCII characters.
+         */
+        long addAscii(String s) {
+            int length = s.length();
+            long address = reserve(length);
+            byte[] chunk = chunks[chunks.length - 1];
+            for (int i = 0, start = (int) address; i < length; i++) {
+                chunk[start + i] = (byte) s.charAt(i);
+            }
+            return address;
+        }
+
+        private long reserve(int length) {
+            if (chunks.length == 0 || position + length > chunks[chunks.length - 1].length) {
+                // oversized sequences get a chunk of their own
+                chunks = Arrays.copyOf(chunks, chunks.length + 1);
+                chunks[chunks.length - 1] = new byte[Math.max(BYTE_CHUNK_SIZE, length)];
+                position = 0;
+            }
+            long address = ((long) (chunks.length - 1) << 32) | position;
+            position += length;
+            return address;
+        }
+
+        boolean equals(long address, int length, byte[] key) {
+            if (length != key.length) {
+                return false;
+            }
+            byte[] chunk = chunks[(int) (address >>> 32)];
+            int start = (int) address;
+            return Arrays.equals(chunk, start, start + length, key, 0, length);
+        }
+
+        /**
+         * Compare to the characters of a String, which must only contain ASCII characters.
+         */
+        boolean equalsAscii(long address, int length, String key) {
+            if (length != key.length()) {
+                return false;
+            }
+            byte[] chunk = chunks[(int) (address >>> 32)];
+            int start = (int) address;
+            for (int i = 0; i < length; i++) {
+                if (chunk[start + i] != key.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String decode(long address, int length) {
+            return new String(chunks[(int) (address >>> 32)], (int) address, length, StandardCharsets.UTF_8);
+        }
+    }
+}
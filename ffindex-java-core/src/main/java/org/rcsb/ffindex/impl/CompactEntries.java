@@ -0,0 +1,274 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.Entries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Holds information on the files in a read-only bundle without creating objects per entry. Filenames are stored as
+ * UTF-8 bytes in one contiguous arena, lookups go through an open-addressing hash table of primitive ints. All storage
+ * can be placed off-heap, in which case the heap footprint doesn't depend on the number of entries.
+ */
+public class CompactEntries implements Entries {
+    // package-private for serialization by BinaryIndex
+    final int count;
+    final int size;
+    final ByteBuffer names;
+    final IntBuffer nameStarts;
+    final LongBuffer offsets;
+    final IntBuffer lengths;
+    final IntBuffer table;
+    private final int mask;
+    // created on the first prefix query
+    private volatile SortedNames sortedNames;
+
+    /**
+     * Create a new Entries object.
+     * @param count the number of index lines
+     * @param size the number of distinct filenames
+     * @param names the arena of all UTF-8 encoded filenames
+     * @param nameStarts start of each filename in the arena, has count + 1 elements
+     * @param offsets offset values
+     * @param lengths length values
+     * @param table hash table of index + 1 values, 0 marks empty slots
+     */
+    CompactEntries(int count, int size, ByteBuffer names, IntBuffer nameStarts, LongBuffer offsets, IntBuffer lengths, IntBuffer table) {
+        this.count = count;
+        this.size = size;
+        this.names = names;
+        this.nameStarts = nameStarts;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.table = table;
+        this.mask = table.capacity() - 1;
+    }
+
+    /**
+     * Parse a file and create an index of all content. Storage is allocated on the heap.
+     * @param indexPath the file to read
+     * @return an Entries object
+     * @throws IOException reading failed
+     */
+    public static CompactEntries of(Path indexPath) throws IOException {
+        return of(indexPath, false);
+    }
+
+    /**
+     * Parse a file and create an index of all content.
+     * @param indexPath the file to read
+     * @param offHeap true to place all storage in direct buffers
+     * @return an Entries object
+     * @throws IOException reading failed
+     */
+    public static CompactEntries of(Path indexPath, boolean offHeap) throws IOException {
+        IndexParser.ParsedIndex parsed = IndexParser.parse(indexPath);
+        return of(parsed.names, parsed.nameStarts, parsed.offsets, parsed.lengths, parsed.size(), offHeap);
+    }
+
+    /**
+     * Create an Entries object from parsed values. The hash table is derived from the filenames.
+     * @param names the arena of all UTF-8 encoded filenames
+     * @param nameStarts start of each filename in the arena, the last valid element marks the end of the arena
+     * @param offsets offset values
+     * @param lengths length values
+     * @param size the number of valid elements in the arrays
+     * @param offHeap true to place all storage in direct buffers
+     * @return an Entries object
+     */
+    static CompactEntries of(byte[] names, int[] nameStarts, long[] offsets, int[] lengths, int size, boolean offHeap) {
+        int nameBytes = nameStarts[size];
+        ByteBuffer nameBuffer = offHeap ? direct(nameBytes).put(names, 0, nameBytes) : ByteBuffer.wrap(names, 0, nameBytes);
+        IntBuffer nameStartBuffer = ints(nameStarts, size + 1, offHeap);
+        LongBuffer offsetBuffer = offHeap ? direct(Long.BYTES * size).asLongBuffer().put(offsets, 0, size) : LongBuffer.wrap(offsets, 0, size);
+        IntBuffer lengthBuffer = ints(lengths, size, offHeap);
+        int capacity = Hashing.tableCapacity(size);
+        IntBuffer table = offHeap ? direct(Integer.BYTES * capacity).asIntBuffer() : IntBuffer.allocate(capacity);
+        int distinct = fillTable(table, nameBuffer, nameStartBuffer, size);
+        return new CompactEntries(size, distinct, nameBuffer, nameStartBuffer, offsetBuffer, lengthBuffer, table);
+    }
+
+    private static ByteBuffer direct(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    private static IntBuffer ints(int[] values, int size, boolean offHeap) {
+        return offHeap ? direct(Integer.BYTES * size).asIntBuffer().put(values, 0, size) : IntBuffer.wrap(values, 0, size);
+    }
+
+    /**
+     * Populate a hash table. Duplicate filenames resolve to their last occurrence, like in all other implementations.
+     * @param table the empty table, its capacity must be a power of two
+     * @param names the arena of all UTF-8 encoded filenames
+     * @param nameStarts start of each filename in the arena
+     * @param size the number of entries
+     * @return the number of distinct filenames
+     */
+    static int fillTable(IntBuffer table, ByteBuffer names, IntBuffer nameStarts, int size) {
+        int mask = table.capacity() - 1;
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            int start = nameStarts.get(i);
+            int length = nameStarts.get(i + 1) - start;
+            int slot = Hashing.hash(names, start, length) & mask;
+            int value;
+            while ((value = table.get(slot)) != 0 && !regionEquals(names, nameStarts, value - 1, start, length)) {
+                slot = (slot + 1) & mask;
+            }
+            if (value == 0) {
+                distinct++;
+            }
+            table.put(slot, i + 1);
+        }
+        return distinct;
+    }
+
+    private static boolean regionEquals(ByteBuffer names, IntBuffer nameStarts, int index, int otherStart, int otherLength) {
+        int start = nameStarts.get(index);
+        if (nameStarts.get(index + 1) - start != otherLength) {
+            return false;
+        }
+        for (int i = 0; i < otherLength; i++) {
+            if (names.get(start + i) != names.get(otherStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getIndex(String filename) {
+        int hash = Hashing.hashAscii(filename);
+        if (hash == Hashing.NOT_ASCII) {
+            return getIndex(filename.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // ASCII fast path: characters are compared to the arena directly, nothing is allocated
+        int slot = hash & mask;
+        int value;
+        while ((value = table.get(slot)) != 0) {
+            if (keyEquals(value - 1, filename)) {
+                return value - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int getIndex(byte[] key) {
+        int slot = Hashing.hash(key) & mask;
+        int value;
+        while ((value = table.get(slot)) != 0) {
+            if (keyEquals(value - 1, key)) {
+                return value - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int index, String key) {
+        int start = nameStarts.get(index);
+        int length = key.length();
+        if (nameStarts.get(index + 1) - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (names.get(start + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean keyEquals(int index, byte[] key) {
+        int start = nameStarts.get(index);
+        if (nameStarts.get(index + 1) - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (names.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getOffset(int index) {
+        return offsets.get(index);
+    }
+
+    @Override
+    public int getLength(int index) {
+        return lengths.get(index);
+    }
+
+    /**
+     * Decode the filename at a given index.
+     * @param index the index of this file
+     * @return the filename
+     */
+    public String getFilename(int index) {
+        int start = nameStarts.get(index);
+        byte[] bytes = new byte[nameStarts.get(index + 1) - start];
+        names.duplicate().position(start).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Stream<String> filenames() {
+        // only report indices that the table resolves to -- shadowed duplicates are skipped
+        return IntStream.range(0, table.capacity())
+                .map(table::get)
+                .filter(value -> value != 0)
+                .mapToObj(value -> getFilename(value - 1));
+    }
+
+    @Override
+    public Stream<String> filenames(String prefix) {
+        SortedNames sorted = sortedNames;
+        if (sorted == null) {
+            sorted = SortedNames.of(new SortedNames.Source() {
+                @Override
+                public int start(int index) {
+                    return nameStarts.get(index);
+                }
+
+                @Override
+                public int end(int index) {
+                    return nameStarts.get(index + 1);
+                }
+
+                @Override
+                public byte get(int position) {
+                    return names.get(position);
+                }
+
+                @Override
+                public String decode(int index) {
+                    return getFilename(index);
+                }
+            }, IntStream.range(0, table.capacity()).map(table::get).filter(value -> value != 0).map(value -> value - 1));
+            sortedNames = sorted;
+        }
+        return sorted.withPrefix(prefix);
+    }
+
+    @Override
+    public long memoryUsage() {
+        return names.capacity() + (long) Integer.BYTES * (nameStarts.capacity() + lengths.capacity() + table.capacity()) + (long) Long.BYTES * offsets.capacity();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
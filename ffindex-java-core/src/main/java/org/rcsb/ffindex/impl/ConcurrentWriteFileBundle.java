@@ -0,0 +1,106 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.Entries;
+import org.rcsb.ffindex.WritableFileBundle;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A write-only bundle that writes the content of files concurrently. Each write reserves the range of its file in the
+ * data file by an atomic counter and writes the content by positional writes, without holding a lock. Only appending
+ * the index entry is serialized, and it happens after the content was written, so the index never references data
+ * that wasn't written. Index entries are written in batches, see {@link #flush()}. A failed or interrupted write
+ * leaves an unreferenced gap in the data file, like files that were removed from the index (see
+ * {@link org.rcsb.ffindex.FileBundleIO#compactBundle(Path, Path)}).
+ *
+ * <p>Index entries are appended in the order in which writes complete, which may differ from the order of their
+ * offsets. Like {@link WriteOnlyFileBundle}, this bundle doesn't check that written files have unique names.
+ */
+public class ConcurrentWriteFileBundle extends AbstractFileBundle implements WritableFileBundle {
+    private final WriteLock writeLock = new WriteLock();
+    private final FileChannel indexFileChannel;
+    private final IndexWriter indexWriter;
+    private final AtomicLong offset;
+
+    public ConcurrentWriteFileBundle(Path dataPath, Path indexPath) throws FileNotFoundException {
+        super(dataPath, indexPath, "rw");
+        this.indexFileChannel = new FileOutputStream(indexPath.toFile(), true).getChannel();
+        this.indexWriter = new IndexWriter(indexFileChannel, null);
+        this.offset = new AtomicLong();
+    }
+
+    @Override
+    public void writeFile(String filename, ByteBuffer byteBuffer) throws IOException {
+        ByteBuffer content = byteBuffer.duplicate();
+        int length = content.remaining() + FILE_END_LENGTH; // separated by NUL
+        long start = offset.getAndAdd(length);
+        writeData(content, start);
+        writeData(FILE_END_BUFFER.duplicate().rewind(), start + length - FILE_END_LENGTH);
+        byteBuffer.position(byteBuffer.limit());
+
+        synchronized (writeLock) {
+            indexWriter.append(filename, start, length);
+        }
+    }
+
+    /**
+     * Add a new file whose content is transferred from a channel, without copying it into the JVM if the channel is a
+     * {@link FileChannel}. Supports files of up to {@link Entries#MAX_LENGTH}.
+     * @param filename the name of this file
+     * @param source the content of this file, read from its current position
+     * @param length the number of bytes to transfer
+     * @throws IOException the file is too large, the channel ends before length or writing failed
+     */
+    public void writeFile(String filename, ReadableByteChannel source, long length) throws IOException {
+        if (length < 0 || length > Entries.MAX_LENGTH - FILE_END_LENGTH) {
+            throw new IOException("File '" + filename + "' has unsupported length " + length);
+        }
+        long start = offset.getAndAdd(length + FILE_END_LENGTH);
+        // writing the end marker first extends the data file, transferFrom doesn't write beyond its end
+        writeData(FILE_END_BUFFER.duplicate().rewind(), start + length);
+        long transferred = 0;
+        while (transferred < length) {
+            long n = dataFileChannel.transferFrom(source, start + transferred, length - transferred);
+            if (n == 0) {
+                throw new EOFException("Content of '" + filename + "' ends after " + transferred + " of " + length + " bytes");
+            }
+            transferred += n;
+        }
+
+        synchronized (writeLock) {
+            indexWriter.append(filename, start, length + FILE_END_LENGTH);
+        }
+    }
+
+    private void writeData(ByteBuffer byteBuffer, long position) throws IOException {
+        while (byteBuffer.hasRemaining()) {
+            position += dataFileChannel.write(byteBuffer, position);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            indexWriter.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            indexFileChannel.close();
+            dataFileChannel.close();
+            dataFile.close();
+        }
+    }
+}
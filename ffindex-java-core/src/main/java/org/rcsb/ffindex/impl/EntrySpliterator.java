@@ -0,0 +1,102 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.FileEntry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Reads a range of the files of a plan chunk by chunk and splits in the middle of the offsets of the remaining files,
+ * so each worker of a parallel stream reads a contiguous part of the data file.
+ */
+final class EntrySpliterator implements Spliterator<FileEntry> {
+    private final AbstractFileBundle bundle;
+    private final ReadPlan plan;
+    private final int end;
+    private int next;
+    // the current chunk holds the files before chunkEnd
+    private ByteBuffer chunk;
+    private long chunkStart;
+    private int chunkEnd;
+
+    /**
+     * Cover a range of files.
+     * @param bundle reads the data file
+     * @param plan all files, each must fit into a buffer
+     * @param next the first file of the range
+     * @param end the end of the range, exclusive
+     */
+    EntrySpliterator(AbstractFileBundle bundle, ReadPlan plan, int next, int end) {
+        this.bundle = bundle;
+        this.plan = plan;
+        this.next = next;
+        this.end = end;
+        this.chunkEnd = next;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super FileEntry> action) {
+        if (next >= end) {
+            return false;
+        }
+        try {
+            if (next >= chunkEnd) {
+                readChunk();
+            }
+            long offset = plan.offset(next);
+            ByteBuffer content = chunk == null ?
+                    bundle.readData(offset, plan.length(next)) :
+                    AbstractFileBundle.slice(chunk, offset - chunkStart, plan.length(next));
+            action.accept(new FileEntry(plan.filename(next), offset, content));
+            next++;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readChunk() throws IOException {
+        if (bundle.isMapped()) {
+            // already mapped, slices are free
+            chunkEnd = next + 1;
+            return;
+        }
+        chunkEnd = plan.group(next, end, AbstractFileBundle.MAX_GAP, AbstractFileBundle.STREAM_CHUNK);
+        chunkStart = plan.offset(next);
+        chunk = bundle.readRegion(chunkStart, plan.end(next, chunkEnd) - chunkStart);
+    }
+
+    @Override
+    public Spliterator<FileEntry> trySplit() {
+        // never split the current chunk
+        int first = Math.max(next, chunkEnd);
+        if (end - first < 2) {
+            return null;
+        }
+        long start = plan.offset(first);
+        int middle = plan.fileAt(start + (plan.offset(end - 1) - start) / 2);
+        middle = Math.min(Math.max(middle, first + 1), end - 1);
+
+        EntrySpliterator prefix = new EntrySpliterator(bundle, plan, next, middle);
+        prefix.chunk = chunk;
+        prefix.chunkStart = chunkStart;
+        prefix.chunkEnd = chunkEnd;
+        next = middle;
+        chunk = null;
+        chunkEnd = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - next;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+}
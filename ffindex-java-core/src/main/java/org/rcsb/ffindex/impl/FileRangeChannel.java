@@ -0,0 +1,102 @@
+package org.rcsb.ffindex.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only channel over a region of a data file. Reads are positional reads of the shared channel, so nothing is
+ * mapped and only the bytes that are read are touched. Closing this channel doesn't close the data file. Not
+ * thread-safe.
+ */
+final class FileRangeChannel implements SeekableByteChannel {
+    private final FileChannel channel;
+    private final long offset;
+    private final long size;
+    private long position;
+    private boolean open;
+
+    /**
+     * Open a region.
+     * @param channel the data file
+     * @param offset the start of the region
+     * @param size the length of the region
+     */
+    FileRangeChannel(FileChannel channel, long offset, long size) {
+        this.channel = channel;
+        this.offset = offset;
+        this.size = size;
+        this.open = true;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+
+        int limit = dst.limit();
+        dst.limit(dst.position() + (int) Math.min(dst.remaining(), size - position));
+        try {
+            int n = channel.read(dst, offset + position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        } finally {
+            dst.limit(limit);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position must not be negative, got " + newPosition);
+        }
+        ensureOpen();
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open && channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.Entries;
+import org.rcsb.ffindex.FilterStatistics;
+
+import java.util.stream.Stream;
+
+/**
+ * Guards the lookups of other entries by a {@link BloomFilter}, so that filenames that are definitely absent are
+ * rejected without consulting the entries.
+ */
+public class FilteredEntries implements Entries {
+    private final Entries entries;
+    private final BloomFilter filter;
+    private final FilterStatistics statistics;
+
+    private FilteredEntries(Entries entries, BloomFilter filter, FilterStatistics statistics) {
+        this.entries = entries;
+        this.filter = filter;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Build a filter over the filenames of some entries.
+     * @param entries the entries to guard
+     * @param falsePositiveProbability the desired probability that an absent filename passes the filter, in (0, 1)
+     * @param statistics counts the answers of the filter, may be null
+     * @return the guarded entries
+     */
+    public static FilteredEntries of(Entries entries, double falsePositiveProbability, FilterStatistics statistics) {
+        BloomFilter filter;
+        try (Stream<String> filenames = entries.filenames()) {
+            filter = BloomFilter.of(filenames.iterator(), entries.size(), falsePositiveProbability);
+        }
+        return new FilteredEntries(entries, filter, statistics);
+    }
+
+    @Override
+    public int getIndex(String filename) {
+        if (!filter.mightContain(filename)) {
+            if (statistics != null) {
+                statistics.record(false, false);
+            }
+            return -1;
+        }
+        int index = entries.getIndex(filename);
+        if (statistics != null) {
+            statistics.record(true, index != -1);
+        }
+        return index;
+    }
+
+    @Override
+    public long getOffset(int index) {
+        return entries.getOffset(index);
+    }
+
+    @Override
+    public int getLength(int index) {
+        return entries.getLength(index);
+    }
+
+    @Override
+    public Stream<String> filenames() {
+        return entries.filenames();
+    }
+
+    @Override
+    public Stream<String> filenames(String prefix) {
+        return entries.filenames(prefix);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public long memoryUsage() {
+        return entries.memoryUsage() + filter.sizeInBits() / 8;
+    }
+
+    /**
+     * Share the filter and entries with a view that counts to other statistics.
+     * @param statistics counts the answers of the filter, may be null
+     * @return the guarded entries
+     */
+    public FilteredEntries withStatistics(FilterStatistics statistics) {
+        return new FilteredEntries(entries, filter, statistics);
+    }
+
+    /**
+     * The memory required by the filter.
+     * @return the number of bits per entry
+     */
+    double filterBitsPerEntry() {
+        return entries.size() == 0 ? 0 : filter.sizeInBits() / (double) entries.size();
+    }
+}
@@ -0,0 +1,155 @@
+package org.rcsb.ffindex.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hash functions over UTF-8 encoded filenames. Both flavors yield identical values for identical bytes, so keys can be
+ * hashed from a byte array during lookups and from an arena during table construction. Only {@link #mix(int)} is
+ * public, for hash tables outside this package.
+ */
+public final class Hashing {
+    private static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+    /**
+     * Returned by {@link #hashAscii(String)} for Strings that contain non-ASCII characters. Real hashes may take this
+     * value as well, callers then merely take the slow path.
+     */
+    static final int NOT_ASCII = 0;
+
+    private Hashing() {
+        // deny instantiation
+    }
+
+    /**
+     * Hash a complete byte array.
+     * @param bytes the UTF-8 bytes of a filename
+     * @return a well-mixed 32-bit hash
+     */
+    static int hash(byte[] bytes) {
+        int h = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Hash a String without encoding it, which is possible if all characters are ASCII and therefore identical to their
+     * UTF-8 representation.
+     * @param s the filename
+     * @return the same value as {@link #hash(byte[])} of the UTF-8 bytes, or {@link #NOT_ASCII}
+     */
+    static int hashAscii(String s) {
+        int h = FNV_OFFSET_BASIS;
+        for (int i = 0, length = s.length(); i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                return NOT_ASCII;
+            }
+            h = (h ^ c) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Hash a region of a buffer. Uses absolute access, the position of the buffer is not modified.
+     * @param buffer the source
+     * @param start the first byte
+     * @param length the number of bytes
+     * @return a well-mixed 32-bit hash
+     */
+    static int hash(ByteBuffer buffer, int start, int length) {
+        int h = FNV_OFFSET_BASIS;
+        for (int i = start, end = start + length; i < end; i++) {
+            h = (h ^ (buffer.get(i) & 0xff)) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Finalization step of MurmurHash3. FNV alone distributes poorly in the low bits, which are the ones that matter for
+     * power-of-two tables.
+     * @param h the raw hash
+     * @return the mixed hash
+     */
+    public static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * 64-bit hash of a byte array, used where 32 bits don't suffice to tell keys apart.
+     * @param bytes the UTF-8 bytes of a filename
+     * @param seed varies the hash function
+     * @return a well-mixed 64-bit hash
+     */
+    static long hash64(byte[] bytes, long seed) {
+        return hash64(bytes, 0, bytes.length, seed);
+    }
+
+    /**
+     * 64-bit hash of a range of a byte array.
+     * @param bytes the array
+     * @param from first byte, inclusive
+     * @param to last byte, exclusive
+     * @param seed varies the hash function
+     * @return a well-mixed 64-bit hash
+     */
+    static long hash64(byte[] bytes, int from, int to, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (bytes[i] & 0xff)) * 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+
+    /**
+     * 64-bit hash of a String without encoding it, see {@link #hashAscii(String)}.
+     * @param s the filename
+     * @param seed varies the hash function
+     * @return the same value as {@link #hash64(byte[], long)} of the UTF-8 bytes, or {@link #NOT_ASCII}
+     */
+    static long hash64Ascii(String s, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0, length = s.length(); i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                return NOT_ASCII;
+            }
+            h = (h ^ c) * 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+
+    /**
+     * Finalization step of the 64-bit MurmurHash3.
+     * @param h the raw hash
+     * @return the mixed hash
+     */
+    static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Table capacity for a number of keys that keeps the load factor of open addressing at or below 0.75.
+     * @param keys the number of keys
+     * @return a power of two
+     */
+    static int tableCapacity(int keys) {
+        long minimum = Math.max(2L, ((long) keys * 4 + 2) / 3);
+        long capacity = Long.highestOneBit(minimum - 1) << 1;
+        if (capacity > 1 << 30) {
+            throw new IllegalArgumentException("Too many entries for a single table: " + keys);
+        }
+        return (int) capacity;
+    }
+}
@@ -3,15 +3,12 @@ package org.rcsb.ffindex.impl;
 import org.rcsb.ffindex.Entries;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
-import static org.rcsb.ffindex.FileBundle.INDEX_ENTRY_DELIMITER;
-
 /**
  * Holds information on the files in a read-only bundle.
  */
@@ -19,17 +16,23 @@ public class ImmutableEntries implements Entries {
     private final Map<String, Integer> filenames;
     private final long[] offsets;
     private final int[] lengths;
+    private final long memoryUsage;
+    // created on the first prefix query
+    private volatile String[] sortedFilenames;
 
     /**
      * Create a new Entries object.
      * @param filenames map of filenames to their index in other arrays
      * @param offsets array of offset values
      * @param lengths array of length values
+     * @param nameBytes the total size of all filenames
      */
-    private ImmutableEntries(Map<String, Integer> filenames, long[] offsets, int[] lengths) {
+    private ImmutableEntries(Map<String, Integer> filenames, long[] offsets, int[] lengths, long nameBytes) {
         this.filenames = filenames;
         this.offsets = offsets;
         this.lengths = lengths;
+        // String with its array, map node, boxed index, table slot, offset and length per entry
+        this.memoryUsage = nameBytes + (long) offsets.length * (40 + 32 + 16 + 8 + 8 + 4);
     }
 
     /**
@@ -39,19 +42,14 @@ public class ImmutableEntries implements Entries {
      * @throws IOException reading failed
      */
     public static ImmutableEntries of(Path indexPath) throws IOException {
-        List<String> lines = Files.readAllLines(indexPath);
-        int lineCount = lines.size();
+        IndexParser.ParsedIndex parsed = IndexParser.parse(indexPath);
+        int lineCount = parsed.size();
 
-        Map<String, Integer> filenames = new HashMap<>();
-        long[] offsets = new long[lineCount];
-        int[] lengths = new int[lineCount];
+        Map<String, Integer> filenames = new HashMap<>((int) (lineCount / 0.75f) + 1);
         for (int i = 0; i < lineCount; i++) {
-            String[] split = lines.get(i).split(INDEX_ENTRY_DELIMITER);
-            filenames.put(split[0], i);
-            offsets[i] = Long.parseLong(split[1]);
-            lengths[i] = Integer.parseInt(split[2]);
+            filenames.put(parsed.getFilename(i), i);
         }
-        return new ImmutableEntries(filenames, offsets, lengths);
+        return new ImmutableEntries(filenames, parsed.offsets, parsed.lengths, parsed.names.length);
     }
 
     @Override
@@ -74,6 +72,22 @@ public class ImmutableEntries implements Entries {
         return filenames.keySet().stream();
     }
 
+    @Override
+    public Stream<String> filenames(String prefix) {
+        String[] sorted = sortedFilenames;
+        if (sorted == null) {
+            sorted = filenames.keySet().toArray(new String[0]);
+            Arrays.sort(sorted);
+            sortedFilenames = sorted;
+        }
+        return SortedNames.withPrefix(sorted, prefix);
+    }
+
+    @Override
+    public long memoryUsage() {
+        return memoryUsage;
+    }
+
     @Override
     public int size() {
         return filenames.size();
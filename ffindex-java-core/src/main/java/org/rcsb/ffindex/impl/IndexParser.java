@@ -0,0 +1,319 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.Entries;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses index files without creating intermediate Strings. The file is split into chunks at line boundaries, chunks
+ * are memory-mapped and parsed in parallel on the common {@link ForkJoinPool}, and tab-separated fields are scanned in
+ * place. The result holds filenames as UTF-8 bytes in one arena and all numbers in primitive arrays.
+ */
+public final class IndexParser {
+    private static final byte TAB = '\t';
+    private static final byte NEWLINE = '\n';
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 64 << 20;
+    private static final int BOUNDARY_SCAN_SIZE = 4096;
+
+    private IndexParser() {
+        // deny instantiation
+    }
+
+    /**
+     * Parse an index file.
+     * @param indexPath the file to read
+     * @return all lines in the order of the file
+     * @throws IOException reading failed or the file is malformed
+     */
+    public static ParsedIndex parse(Path indexPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            long[] boundaries = chunkBoundaries(channel);
+            ParsedIndex[] chunks;
+            try {
+                chunks = ForkJoinPool.commonPool().invoke(new ParseTask(channel, boundaries, 0, boundaries.length - 1));
+            } catch (UncheckedIOException e) {
+                throw new IOException("Failed to parse " + indexPath, e.getCause());
+            }
+            return ParsedIndex.concat(chunks);
+        }
+    }
+
+    /**
+     * Split a file into chunks that end with a line break (or the end of the file).
+     * @param channel the file
+     * @return positions of chunk starts, followed by the size of the file
+     * @throws IOException reading failed
+     */
+    private static long[] chunkBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (4L * parallelism)));
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        long position = chunkSize;
+        while (position < size) {
+            long lineEnd = findLineEnd(channel, buffer, position);
+            if (lineEnd < 0) {
+                break;
+            }
+            boundaries.add(lineEnd + 1);
+            position = lineEnd + 1 + chunkSize;
+        }
+        boundaries.add(size);
+        return boundaries.stream().mapToLong(Long::longValue).distinct().toArray();
+    }
+
+    private static long findLineEnd(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == NEWLINE) {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Parses a range of chunks, forking for ranges of more than one chunk.
+     */
+    private static class ParseTask extends RecursiveTask<ParsedIndex[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+
+        ParseTask(FileChannel channel, long[] boundaries, int from, int to) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ParsedIndex[] compute() {
+            if (to - from <= 1) {
+                if (to == from) {
+                    return new ParsedIndex[0];
+                }
+                try {
+                    long start = boundaries[from];
+                    ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, boundaries[to] - start);
+                    return new ParsedIndex[] { parseChunk(chunk, start) };
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            int middle = (from + to) >>> 1;
+            ParseTask right = new ParseTask(channel, boundaries, middle, to);
+            right.fork();
+            ParsedIndex[] left = new ParseTask(channel, boundaries, from, middle).compute();
+            ParsedIndex[] joined = Arrays.copyOf(left, left.length + (to - middle));
+            ParsedIndex[] rightResult = right.join();
+            System.arraycopy(rightResult, 0, joined, left.length, rightResult.length);
+            return joined;
+        }
+    }
+
+    private static ParsedIndex parseChunk(ByteBuffer chunk, long chunkStart) throws IOException {
+        int limit = chunk.limit();
+        // rough estimate, arrays grow if needed
+        int capacity = Math.max(16, limit / 32);
+        byte[] names = new byte[limit];
+        int[] nameStarts = new int[capacity + 1];
+        long[] offsets = new long[capacity];
+        int[] lengths = new int[capacity];
+        int count = 0;
+        int nameEnd = 0;
+
+        int position = 0;
+        while (position < limit) {
+            if (chunk.get(position) == NEWLINE) {
+                // tolerate empty lines
+                position++;
+                continue;
+            }
+
+            if (count == offsets.length) {
+                capacity = count * 2;
+                nameStarts = Arrays.copyOf(nameStarts, capacity + 1);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+
+            int lineStart = position;
+            nameStarts[count] = nameEnd;
+            byte b;
+            while (position < limit && (b = chunk.get(position)) != TAB && b != NEWLINE) {
+                names[nameEnd++] = b;
+                position++;
+            }
+            position = expectTab(chunk, position, chunkStart + lineStart);
+
+            long offset = 0;
+            int digitsStart = position;
+            while (position < limit && (b = chunk.get(position)) >= '0' && b <= '9') {
+                offset = offset * 10 + (b - '0');
+                position++;
+            }
+            if (position == digitsStart || position - digitsStart > 18) {
+                throw malformed(chunkStart + lineStart);
+            }
+            position = expectTab(chunk, position, chunkStart + lineStart);
+
+            long length = 0;
+            digitsStart = position;
+            while (position < limit && (b = chunk.get(position)) >= '0' && b <= '9') {
+                length = length * 10 + (b - '0');
+                position++;
+            }
+            if (position == digitsStart || position - digitsStart > 10 || length > Entries.MAX_LENGTH) {
+                throw malformed(chunkStart + lineStart);
+            }
+
+            // ignore any additional fields
+            while (position < limit && chunk.get(position) != NEWLINE) {
+                position++;
+            }
+            position++;
+
+            offsets[count] = offset;
+            lengths[count] = (int) length;
+            count++;
+        }
+        nameStarts[count] = nameEnd;
+        return new ParsedIndex(names, nameStarts, offsets, lengths, count);
+    }
+
+    private static int expectTab(ByteBuffer chunk, int position, long lineStart) throws IOException {
+        if (position >= chunk.limit() || chunk.get(position) != TAB) {
+            throw malformed(lineStart);
+        }
+        return position + 1;
+    }
+
+    private static IOException malformed(long lineStart) {
+        return new IOException("Malformed index entry at byte " + lineStart);
+    }
+
+    /**
+     * The content of an index file in primitive arrays. Arrays may be larger than {@link #size()}.
+     */
+    public static class ParsedIndex {
+        final byte[] names;
+        final int[] nameStarts;
+        final long[] offsets;
+        final int[] lengths;
+        final int size;
+
+        ParsedIndex(byte[] names, int[] nameStarts, long[] offsets, int[] lengths, int size) {
+            this.names = names;
+            this.nameStarts = nameStarts;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.size = size;
+        }
+
+        /**
+         * Join the results of all chunks. Also trims all arrays to their exact size.
+         */
+        private static ParsedIndex concat(ParsedIndex[] chunks) throws IOException {
+            int size = 0;
+            long nameBytes = 0;
+            for (ParsedIndex chunk : chunks) {
+                size += chunk.size;
+                nameBytes += chunk.nameStarts[chunk.size];
+            }
+            if (nameBytes > Integer.MAX_VALUE) {
+                throw new IOException("Filenames exceed the maximum arena size of 2 GB");
+            }
+
+            byte[] names = new byte[(int) nameBytes];
+            int[] nameStarts = new int[size + 1];
+            long[] offsets = new long[size];
+            int[] lengths = new int[size];
+            int index = 0;
+            int nameEnd = 0;
+            for (ParsedIndex chunk : chunks) {
+                int chunkNameBytes = chunk.nameStarts[chunk.size];
+                System.arraycopy(chunk.names, 0, names, nameEnd, chunkNameBytes);
+                for (int i = 0; i < chunk.size; i++) {
+                    nameStarts[index + i] = chunk.nameStarts[i] + nameEnd;
+                }
+                System.arraycopy(chunk.offsets, 0, offsets, index, chunk.size);
+                System.arraycopy(chunk.lengths, 0, lengths, index, chunk.size);
+                index += chunk.size;
+                nameEnd += chunkNameBytes;
+            }
+            nameStarts[size] = nameEnd;
+            return new ParsedIndex(names, nameStarts, offsets, lengths, size);
+        }
+
+        /**
+         * The number of lines.
+         * @return an int
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Decode the filename of a line.
+         * @param index the line number
+         * @return the filename
+         */
+        public String getFilename(int index) {
+            int start = nameStarts[index];
+            return new String(names, start, nameStarts[index + 1] - start, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * The offset of a line.
+         * @param index the line number
+         * @return the offset
+         */
+        public long getOffset(int index) {
+            return offsets[index];
+        }
+
+        /**
+         * The length of a line.
+         * @param index the line number
+         * @return the length as unsigned int
+         */
+        public int getLength(int index) {
+            return lengths[index];
+        }
+
+        /**
+         * The length of a line.
+         * @param index the line number
+         * @return the length
+         */
+        public long getLongLength(int index) {
+            return Integer.toUnsignedLong(lengths[index]);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.rcsb.ffindex.impl;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends entries to an index file in batches. Entries are encoded directly into a reusable direct buffer, which is
+ * written once it is full or holds {@link #MAX_PENDING_ENTRIES} entries. There is no timer: {@link #MAX_PENDING_NANOS}
+ * is only checked when an entry is appended, so entries stay pending until the next append or {@link #flush()}.
+ * Content that is buffered elsewhere is flushed before each batch, so the index never references data that wasn't
+ * written. Not thread-safe.
+ */
+final class IndexWriter implements Flushable {
+    /**
+     * The capacity of the buffer.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Entries are written once this many are pending.
+     */
+    static final int MAX_PENDING_ENTRIES = 4096;
+    /**
+     * Entries are written on the next append once the oldest pending entry is older than this.
+     */
+    static final long MAX_PENDING_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // besides the name: 2 delimiters, 19 digits of each long, line end
+    private static final int MAX_NUMBERS_LENGTH = 2 + 19 + 19 + 1;
+    private static final byte DELIMITER = '\t';
+    private static final byte LINE_END = '\n';
+
+    private final FileChannel channel;
+    private final Flushable data;
+    private final ByteBuffer buffer;
+    private int pendingEntries;
+    private long firstPendingNanos;
+
+    /**
+     * Write entries to an index file.
+     * @param channel the index file, positioned at its end
+     * @param data flushed before entries are written, may be null if content isn't buffered
+     */
+    IndexWriter(FileChannel channel, Flushable data) {
+        this.channel = channel;
+        this.data = data;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Append an entry, which is written with the next batch.
+     * @param filename the name of the file
+     * @param offset the start of the file in the data file
+     * @param length the length of the file, including the end marker
+     * @throws IOException writing a batch failed
+     */
+    void append(String filename, long offset, long length) throws IOException {
+        byte[] bytes = isAscii(filename) ? null : filename.getBytes(StandardCharsets.UTF_8);
+        int nameLength = bytes != null ? bytes.length : filename.length();
+        if (buffer.remaining() < nameLength + MAX_NUMBERS_LENGTH) {
+            flush();
+            if (buffer.remaining() < nameLength + MAX_NUMBERS_LENGTH) {
+                // the line exceeds the buffer, write it on its own and in one piece
+                ByteBuffer line = ByteBuffer.allocate(nameLength + MAX_NUMBERS_LENGTH);
+                encode(line, filename, bytes, offset, length);
+                writeFully(line.flip());
+                return;
+            }
+        }
+
+        encode(buffer, filename, bytes, offset, length);
+        if (pendingEntries++ == 0) {
+            firstPendingNanos = System.nanoTime();
+        } else if (pendingEntries >= MAX_PENDING_ENTRIES || System.nanoTime() - firstPendingNanos > MAX_PENDING_NANOS) {
+            flush();
+        }
+    }
+
+    private static void encode(ByteBuffer target, String filename, byte[] bytes, long offset, long length) {
+        if (bytes != null) {
+            target.put(bytes);
+        } else {
+            for (int i = 0; i < filename.length(); i++) {
+                target.put((byte) filename.charAt(i));
+            }
+        }
+        target.put(DELIMITER);
+        putDecimal(target, offset);
+        target.put(DELIMITER);
+        putDecimal(target, length);
+        target.put(LINE_END);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putDecimal(ByteBuffer target, long value) {
+        if (value == 0) {
+            target.put((byte) '0');
+            return;
+        }
+        int start = target.position();
+        while (value > 0) {
+            target.put((byte) ('0' + value % 10));
+            value /= 10;
+        }
+        // digits were written in reverse order
+        for (int i = start, j = target.position() - 1; i < j; i++, j--) {
+            byte b = target.get(i);
+            target.put(i, target.get(j));
+            target.put(j, b);
+        }
+    }
+
+    /**
+     * Write all pending entries, after flushing buffered content.
+     * @throws IOException writing failed
+     */
+    @Override
+    public void flush() throws IOException {
+        if (data != null) {
+            data.flush();
+        }
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+        pendingEntries = 0;
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+}
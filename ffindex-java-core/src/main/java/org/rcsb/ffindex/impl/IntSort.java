@@ -0,0 +1,80 @@
+package org.rcsb.ffindex.impl;
+
+/**
+ * Sorts primitive int arrays by a custom order, which {@link java.util.Arrays} only supports for boxed values. Used to
+ * order indices by the values they point to without allocating an {@link Integer} per index.
+ */
+final class IntSort {
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    /**
+     * Compares two ints, like {@link java.util.Comparator} without boxing.
+     */
+    @FunctionalInterface
+    interface IntComparator {
+        /**
+         * @param a the first value
+         * @param b the second value
+         * @return a negative int, zero or a positive int as the first value is less than, equal to or greater than the
+         * second
+         */
+        int compare(int a, int b);
+    }
+
+    private IntSort() {
+        // deny instantiation
+    }
+
+    /**
+     * Sort an array in place. The sort is stable and takes O(n log n) comparisons.
+     * @param values the values to sort
+     * @param comparator the order
+     */
+    static void sort(int[] values, IntComparator comparator) {
+        if (values.length > INSERTION_SORT_THRESHOLD) {
+            mergeSort(values.clone(), values, 0, values.length, comparator);
+        } else {
+            insertionSort(values, 0, values.length, comparator);
+        }
+    }
+
+    /**
+     * Merge sort of a range that alternates between two arrays, which hold identical content on entry.
+     * @param source scratch space
+     * @param target receives the sorted range
+     */
+    private static void mergeSort(int[] source, int[] target, int from, int to, IntComparator comparator) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(target, from, to, comparator);
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(target, source, from, middle, comparator);
+        mergeSort(target, source, middle, to, comparator);
+        if (comparator.compare(source[middle - 1], source[middle]) <= 0) {
+            // already in order
+            System.arraycopy(source, from, target, from, to - from);
+            return;
+        }
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right >= to || (left < middle && comparator.compare(source[left], source[right]) <= 0)) {
+                target[i] = source[left++];
+            } else {
+                target[i] = source[right++];
+            }
+        }
+    }
+
+    private static void insertionSort(int[] values, int from, int to, IntComparator comparator) {
+        for (int i = from + 1; i < to; i++) {
+            int value = values[i];
+            int j = i - 1;
+            while (j >= from && comparator.compare(values[j], value) > 0) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.rcsb.ffindex.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A data file that is mapped in segments of equal size, except for the last one. Regions within one segment are
+ * returned as slices without any system call. Mappings are released by the garbage collector once the segments and all
+ * slices are unreachable.
+ *
+ * <p>Content that is appended after the file was mapped is read positionally until it amounts to
+ * {@link #REMAP_THRESHOLD} (or a segment, if that's smaller). Only then is the last segment mapped again, so a bundle
+ * that alternates between appending and reading doesn't remap on every read.
+ */
+final class MappedSegments {
+    /**
+     * 1 GiB: the largest power of 2 that a single mapping supports.
+     */
+    static final int DEFAULT_SEGMENT_SHIFT = 30;
+    /**
+     * 16 MiB: appended content is mapped once it grows beyond this size.
+     */
+    static final long REMAP_THRESHOLD = 16 * 1024 * 1024;
+    private static final MappedByteBuffer[] NO_SEGMENTS = new MappedByteBuffer[0];
+
+    private final FileChannel channel;
+    private final int segmentShift;
+    private final boolean load;
+    private final long remapThreshold;
+    private volatile MappedByteBuffer[] segments;
+    private volatile long mappedLength;
+
+    MappedSegments(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_SEGMENT_SHIFT, false);
+    }
+
+    MappedSegments(FileChannel channel, int segmentShift) throws IOException {
+        this(channel, segmentShift, false);
+    }
+
+    /**
+     * Map a file.
+     * @param channel the file
+     * @param segmentShift the size of segments as power of 2
+     * @param load true to fault in all pages of each segment when it is mapped, so that reads don't touch the disk
+     * @throws IOException mapping failed
+     */
+    MappedSegments(FileChannel channel, int segmentShift, boolean load) throws IOException {
+        this.channel = channel;
+        this.segmentShift = segmentShift;
+        this.load = load;
+        this.remapThreshold = Math.min(1L << segmentShift, REMAP_THRESHOLD);
+        this.segments = NO_SEGMENTS;
+        extend();
+    }
+
+    /**
+     * Read-only view of a region of the file.
+     * @param offset the start of the region
+     * @param length the length of the region
+     * @return a buffer positioned at 0
+     * @throws IOException mapping or reading failed
+     */
+    ByteBuffer slice(long offset, long length) throws IOException {
+        long end = offset + length;
+        if (end > mappedLength) {
+            extendIfGrown();
+            if (end > mappedLength && length <= remapThreshold) {
+                // recently appended content
+                return read(offset, (int) length);
+            }
+        }
+
+        int segment = (int) (offset >>> segmentShift);
+        if (length == 0 || end > mappedLength || segment != (int) ((end - 1) >>> segmentShift)) {
+            // crosses a segment boundary or the end of the file
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+
+        ByteBuffer slice = segments[segment].duplicate();
+        int start = (int) (offset - ((long) segment << segmentShift));
+        slice.position(start).limit(start + (int) length);
+        return slice.slice();
+    }
+
+    /**
+     * Copy a region of the file into a buffer without allocating. Regions may span several segments.
+     * @param offset the start of the region
+     * @param length the length of the region
+     * @param target the buffer to fill, its position is advanced by length
+     * @return false if the region isn't mapped, e.g. because it exceeds the file or was appended recently, nothing is
+     * copied then
+     * @throws IOException mapping failed
+     */
+    boolean copy(long offset, int length, ByteBuffer target) throws IOException {
+        long end = offset + length;
+        if (end > mappedLength) {
+            extendIfGrown();
+            if (end > mappedLength) {
+                return false;
+            }
+        }
+
+        MappedByteBuffer[] segments = this.segments;
+        long segmentMask = (1L << segmentShift) - 1;
+        while (offset < end) {
+            // bulk copies need a position, so each copy uses its own view of the shared segment -- keeping views per
+            // thread would hold on to mappings in pooled threads long after the bundle was closed
+            ByteBuffer view = segments[(int) (offset >>> segmentShift)].duplicate();
+            int from = (int) (offset & segmentMask);
+            int to = (int) Math.min(view.capacity(), from + (end - offset));
+            view.limit(to).position(from);
+            target.put(view);
+            offset += to - from;
+        }
+        return true;
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("File ends before " + (offset + length));
+            }
+        }
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+    private void extendIfGrown() throws IOException {
+        if (channel.size() - mappedLength >= remapThreshold) {
+            extend();
+        }
+    }
+
+    /**
+     * Map all content that was appended since the last invocation. Complete segments are kept, the last segment is
+     * mapped again.
+     */
+    private synchronized void extend() throws IOException {
+        long size = channel.size();
+        if (size <= mappedLength) {
+            return;
+        }
+
+        long segmentSize = 1L << segmentShift;
+        int count = (int) ((size + segmentSize - 1) >>> segmentShift);
+        MappedByteBuffer[] extended = Arrays.copyOf(segments, count);
+        int first = segments.length == 0 ? 0 : segments.length - 1;
+        for (int i = first; i < count; i++) {
+            long start = (long) i << segmentShift;
+            extended[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+            if (load) {
+                extended[i].load();
+            }
+        }
+        segments = extended;
+        mappedLength = size;
+    }
+
+    /**
+     * The number of mapped segments.
+     * @return an int
+     */
+    int segmentCount() {
+        return segments.length;
+    }
+}
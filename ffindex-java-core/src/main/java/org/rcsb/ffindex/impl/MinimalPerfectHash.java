@@ -0,0 +1,200 @@
+package org.rcsb.ffindex.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A minimal perfect hash function over a fixed set of 64-bit key hashes, following the BBHash construction: every level
+ * is a bit array, a key sets its bit on the first level where it doesn't collide with any other key, and the slot of a
+ * key is the rank of that bit among all set bits. Requires about 3.5 bits per key.
+ *
+ * <p>Keys that aren't part of the set either map to -1 or to an arbitrary slot, callers have to verify the key stored
+ * in that slot.
+ */
+final class MinimalPerfectHash {
+    private static final double GAMMA = 2.0;
+    private static final int MAX_LEVELS = 64;
+    private static final long LEVEL_SEED = 0x9e3779b97f4a7c15L;
+    // ranks are stored for blocks of 8 words
+    private static final int RANK_BLOCK_BITS = 3;
+
+    private final long seed;
+    private final int size;
+    private final long[] levelStarts;
+    private final long[] bits;
+    private final int[] ranks;
+
+    private MinimalPerfectHash(long seed, int size, long[] levelStarts, long[] bits) {
+        this.seed = seed;
+        this.size = size;
+        this.levelStarts = levelStarts;
+        this.bits = bits;
+        this.ranks = new int[(bits.length >>> RANK_BLOCK_BITS) + 1];
+        int rank = 0;
+        for (int word = 0; word < bits.length; word++) {
+            if ((word & ((1 << RANK_BLOCK_BITS) - 1)) == 0) {
+                ranks[word >>> RANK_BLOCK_BITS] = rank;
+            }
+            rank += Long.bitCount(bits[word]);
+        }
+    }
+
+    /**
+     * Build a function over a set of key hashes.
+     * @param hashes distinct key hashes, computed with {@link Hashing#hash64(byte[], long)} and the given seed
+     * @param seed the seed the hashes were computed with, only recorded so that callers can hash keys the same way
+     * @return a function that maps each hash to a distinct slot in [0, hashes.length)
+     * @throws IllegalArgumentException if the hashes aren't distinct
+     */
+    static MinimalPerfectHash build(long[] hashes, long seed) {
+        long[] levelStarts = new long[MAX_LEVELS + 1];
+        long[] bits = new long[0];
+        // keys that collided on all levels so far, compacted in place
+        long[] remaining = hashes.clone();
+        int remainingCount = remaining.length;
+        int levels = 0;
+        while (remainingCount > 0) {
+            if (levels == MAX_LEVELS) {
+                throw new IllegalArgumentException("Key hashes aren't distinct");
+            }
+
+            int words = (int) Math.max(1, ((long) Math.ceil(remainingCount * GAMMA) + 63) >>> 6);
+            long levelBits = (long) words << 6;
+            long[] seen = new long[words];
+            long[] collisions = new long[words];
+            for (int i = 0; i < remainingCount; i++) {
+                int position = position(remaining[i], levels, levelBits);
+                long mask = 1L << position;
+                if ((seen[position >>> 6] & mask) != 0) {
+                    collisions[position >>> 6] |= mask;
+                } else {
+                    seen[position >>> 6] |= mask;
+                }
+            }
+
+            int next = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                long hash = remaining[i];
+                int position = position(hash, levels, levelBits);
+                if ((collisions[position >>> 6] & (1L << position)) != 0) {
+                    remaining[next++] = hash;
+                }
+            }
+            for (int i = 0; i < words; i++) {
+                seen[i] &= ~collisions[i];
+            }
+
+            int start = bits.length;
+            bits = Arrays.copyOf(bits, start + words);
+            System.arraycopy(seen, 0, bits, start, words);
+            levelStarts[levels + 1] = levelStarts[levels] + levelBits;
+            levels++;
+            remainingCount = next;
+        }
+        return new MinimalPerfectHash(seed, hashes.length, Arrays.copyOf(levelStarts, levels + 1), bits);
+    }
+
+    private static int position(long hash, int level, long levelBits) {
+        long h = Hashing.mix64(hash + (level + 1) * LEVEL_SEED);
+        // maps to [0, levelBits) without a division
+        return (int) (((h >>> 32) * levelBits) >>> 32);
+    }
+
+    /**
+     * The seed of the key hash function.
+     * @return a long
+     */
+    long seed() {
+        return seed;
+    }
+
+    /**
+     * The number of keys.
+     * @return an int
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * The memory required by the bit arrays.
+     * @return the number of bits
+     */
+    long sizeInBits() {
+        return (long) bits.length * Long.SIZE;
+    }
+
+    /**
+     * Determine the slot of a key.
+     * @param hash the key hash
+     * @return the slot, or -1 if the key is certainly not part of the set
+     */
+    int slot(long hash) {
+        for (int level = 0, levels = levelStarts.length - 1; level < levels; level++) {
+            long levelStart = levelStarts[level];
+            long bit = levelStart + position(hash, level, levelStarts[level + 1] - levelStart);
+            int word = (int) (bit >>> 6);
+            if ((bits[word] & (1L << bit)) != 0) {
+                return rank(word, (int) bit & 63);
+            }
+        }
+        return -1;
+    }
+
+    private int rank(int word, int bit) {
+        int rank = ranks[word >>> RANK_BLOCK_BITS];
+        for (int i = word & ~((1 << RANK_BLOCK_BITS) - 1); i < word; i++) {
+            rank += Long.bitCount(bits[i]);
+        }
+        return rank + Long.bitCount(bits[word] & ((1L << bit) - 1));
+    }
+
+    /**
+     * Serialize this function.
+     * @param out the destination
+     * @throws IOException writing failed
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(seed);
+        out.writeInt(size);
+        out.writeInt(levelStarts.length);
+        for (long levelStart : levelStarts) {
+            out.writeLong(levelStart);
+        }
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Deserialize a function written by {@link #writeTo(DataOutput)}.
+     * @param in the source
+     * @return the function
+     * @throws IOException reading failed or the data is malformed
+     */
+    static MinimalPerfectHash readFrom(DataInput in) throws IOException {
+        long seed = in.readLong();
+        int size = in.readInt();
+        int levelCount = in.readInt();
+        if (size < 0 || levelCount < 1 || levelCount > MAX_LEVELS + 1) {
+            throw new IOException("Malformed perfect hash function");
+        }
+        long[] levelStarts = new long[levelCount];
+        for (int i = 0; i < levelCount; i++) {
+            levelStarts[i] = in.readLong();
+            if (i > 0 && (levelStarts[i] <= levelStarts[i - 1] || (levelStarts[i] & 63) != 0)) {
+                throw new IOException("Malformed perfect hash function");
+            }
+        }
+        if (levelStarts[0] != 0 || levelStarts[levelCount - 1] >>> 6 > Integer.MAX_VALUE) {
+            throw new IOException("Malformed perfect hash function");
+        }
+        long[] bits = new long[(int) (levelStarts[levelCount - 1] >>> 6)];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.readLong();
+        }
+        return new MinimalPerfectHash(seed, size, levelStarts, bits);
+    }
+}
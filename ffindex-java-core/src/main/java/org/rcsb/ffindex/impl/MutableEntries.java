@@ -3,42 +3,41 @@ package org.rcsb.ffindex.impl;
 import org.rcsb.ffindex.Entries;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static org.rcsb.ffindex.FileBundle.INDEX_ENTRY_DELIMITER;
-
 /**
- * Entries of an appendable bundle that supports read and write operations.
+ * Entries of an appendable bundle that supports read and write operations. All values are kept in chunked primitive
+ * arrays and filenames are resolved by an open-addressing hash table, so adding a file doesn't box any values and
+ * growing never copies existing entries.
  */
 public class MutableEntries implements Entries {
-    private final Map<String, Integer> indices;
-    private final List<Long> offsets;
-    private final List<Integer> lengths;
+    private final ChunkedArrays.Bytes names;
+    private final ChunkedArrays.Longs nameAddresses;
+    private final ChunkedArrays.Ints nameLengths;
+    private final ChunkedArrays.Ints hashes;
+    private final ChunkedArrays.Longs offsets;
+    private final ChunkedArrays.Ints lengths;
+    private int[] table;
+    private int size;
+    // created on the first prefix query, dropped whenever a file is added
+    private volatile String[] sortedFilenames;
 
     /**
      * Create an empty Entries object.
      */
     public MutableEntries() {
-        this(new HashMap<>(), new ArrayList<>(), new ArrayList<>());
-    }
-
-    /**
-     * Create a new Entries object.
-     * @param indices map of filenames -> index position of array
-     * @param offsets array of offset values
-     * @param lengths array of length values
-     */
-    private MutableEntries(Map<String, Integer> indices, List<Long> offsets, List<Integer> lengths) {
-        this.indices = indices;
-        this.offsets = offsets;
-        this.lengths = lengths;
+        this.names = new ChunkedArrays.Bytes();
+        this.nameAddresses = new ChunkedArrays.Longs();
+        this.nameLengths = new ChunkedArrays.Ints();
+        this.hashes = new ChunkedArrays.Ints();
+        this.offsets = new ChunkedArrays.Longs();
+        this.lengths = new ChunkedArrays.Ints();
+        this.table = new int[Hashing.tableCapacity(0)];
     }
 
     /**
@@ -48,24 +47,66 @@ public class MutableEntries implements Entries {
      * @throws IOException reading failed
      */
     public static MutableEntries of(Path indexPath) throws IOException {
-        List<String> lines = Files.readAllLines(indexPath);
-        int lineCount = lines.size();
+        IndexParser.ParsedIndex parsed = IndexParser.parse(indexPath);
+        int lineCount = parsed.size();
 
-        Map<String, Integer> indices = new HashMap<>();
-        List<Long> offsets = new ArrayList<>();
-        List<Integer> lengths = new ArrayList<>();
+        MutableEntries entries = new MutableEntries();
+        entries.table = new int[Hashing.tableCapacity(lineCount)];
         for (int i = 0; i < lineCount; i++) {
-            String[] split = lines.get(i).split(INDEX_ENTRY_DELIMITER);
-            indices.put(split[0], i);
-            offsets.add(Long.parseLong(split[1]));
-            lengths.add(Integer.parseInt(split[2]));
+            int start = parsed.nameStarts[i];
+            byte[] name = Arrays.copyOfRange(parsed.names, start, parsed.nameStarts[i + 1]);
+            int hash = Hashing.hash(name);
+            // like before, later occurrences of a filename shadow earlier ones
+            entries.insert(entries.findSlot(name, hash), entries.names.add(name), name.length, hash, parsed.getOffset(i), parsed.getLength(i));
         }
-        return new MutableEntries(indices, offsets, lengths);
+        return entries;
     }
 
     @Override
     public int getIndex(String filename) {
-        return indices.getOrDefault(filename, -1);
+        int hash = Hashing.hashAscii(filename);
+        int slot;
+        if (hash == Hashing.NOT_ASCII) {
+            byte[] key = filename.getBytes(StandardCharsets.UTF_8);
+            slot = findSlot(key, Hashing.hash(key));
+        } else {
+            slot = findSlot(filename, hash);
+        }
+        return table[slot] - 1;
+    }
+
+    /**
+     * Find the slot that holds a filename, or the empty slot where it would be inserted.
+     */
+    private int findSlot(byte[] key, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        int value;
+        while ((value = table[slot]) != 0) {
+            int index = value - 1;
+            if (hashes.get(index) == hash && names.equals(nameAddresses.get(index), nameLengths.get(index), key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Find the slot of an ASCII-only filename. Characters are compared to the arena directly, nothing is allocated.
+     */
+    private int findSlot(String key, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        int value;
+        while ((value = table[slot]) != 0) {
+            int index = value - 1;
+            if (hashes.get(index) == hash && names.equalsAscii(nameAddresses.get(index), nameLengths.get(index), key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
     }
 
     @Override
@@ -80,12 +121,25 @@ public class MutableEntries implements Entries {
 
     @Override
     public Stream<String> filenames() {
-        return indices.keySet().stream();
+        int[] t = table;
+        return IntStream.of(t)
+                .filter(value -> value != 0)
+                .mapToObj(value -> names.decode(nameAddresses.get(value - 1), nameLengths.get(value - 1)));
+    }
+
+    @Override
+    public Stream<String> filenames(String prefix) {
+        String[] sorted = sortedFilenames;
+        if (sorted == null) {
+            sorted = filenames().sorted().toArray(String[]::new);
+            sortedFilenames = sorted;
+        }
+        return SortedNames.withPrefix(sorted, prefix);
     }
 
     @Override
     public int size() {
-        return indices.size();
+        return size;
     }
 
     /**
@@ -95,12 +149,60 @@ public class MutableEntries implements Entries {
      * @param length the length of the file in bytes
      */
     public void addFile(String filename, long offset, int length) throws IOException {
-        if (indices.containsKey(filename)) {
+        int hash = Hashing.hashAscii(filename);
+        if (hash == Hashing.NOT_ASCII) {
+            byte[] name = filename.getBytes(StandardCharsets.UTF_8);
+            hash = Hashing.hash(name);
+            int slot = findSlot(name, hash);
+            rejectDuplicate(slot, filename);
+            insert(slot, names.add(name), name.length, hash, offset, length);
+        } else {
+            int slot = findSlot(filename, hash);
+            rejectDuplicate(slot, filename);
+            insert(slot, names.addAscii(filename), filename.length(), hash, offset, length);
+        }
+    }
+
+    private void rejectDuplicate(int slot, String filename) throws FileAlreadyExistsException {
+        if (table[slot] != 0) {
             throw new FileAlreadyExistsException("File " + filename + " is already registered in bundle");
         }
+    }
 
-        indices.put(filename, indices.size());
+    /**
+     * Register a file in the given slot. An occupied slot is taken over, shadowing the previous file of that name.
+     */
+    private void insert(int slot, long nameAddress, int nameLength, int hash, long offset, int length) {
+        boolean present = table[slot] != 0;
+        int index = offsets.size();
+        nameAddresses.add(nameAddress);
+        nameLengths.add(nameLength);
+        hashes.add(hash);
         offsets.add(offset);
         lengths.add(length);
+        table[slot] = index + 1;
+        sortedFilenames = null;
+        if (!present) {
+            size++;
+            if (size > table.length / 4 * 3) {
+                rehash();
+            }
+        }
+    }
+
+    private void rehash() {
+        int[] t = new int[table.length * 2];
+        int mask = t.length - 1;
+        for (int value : table) {
+            if (value == 0) {
+                continue;
+            }
+            int slot = hashes.get(value - 1) & mask;
+            while (t[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            t[slot] = value;
+        }
+        table = t;
     }
 }
@@ -0,0 +1,306 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.Entries;
+import org.rcsb.ffindex.FileBundle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Entries of a read-only bundle that are resolved by a {@link MinimalPerfectHash}. Entries are stored in the order of
+ * their slot, so a lookup is one evaluation of the hash function plus one comparison of the stored filename. There is
+ * no hash table: besides the filename arena and the offset and length arrays, only a few bits per entry are needed.
+ *
+ * <p>The hash function can be persisted in a sidecar of the index file, which records size and modification time of
+ * the index it was built for. Without a valid sidecar the function is built when the index is loaded.
+ *
+ * <p>Sidecar layout (big-endian): magic, version, source size, source modification time, the serialized function and a
+ * CRC32 of all preceding bytes.
+ */
+public class PerfectHashEntries implements Entries {
+    private static final long MAGIC = 0x46464944584d5048L; // "FFIDXMPH"
+    private static final int VERSION = 1;
+    private static final int MAX_ATTEMPTS = 16;
+
+    private final MinimalPerfectHash hash;
+    private final byte[] names;
+    private final int[] nameStarts;
+    private final long[] offsets;
+    private final int[] lengths;
+    // created on the first prefix query
+    private volatile SortedNames sortedNames;
+
+    private PerfectHashEntries(MinimalPerfectHash hash, byte[] names, int[] nameStarts, long[] offsets, int[] lengths) {
+        this.hash = hash;
+        this.names = names;
+        this.nameStarts = nameStarts;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Parse an index file and build its hash function in memory.
+     * @param indexPath the file to read
+     * @return an Entries object
+     * @throws IOException reading failed
+     */
+    public static PerfectHashEntries of(Path indexPath) throws IOException {
+        return build(IndexParser.parse(indexPath));
+    }
+
+    /**
+     * Parse an index file and resolve filenames by the hash function of a sidecar. If the sidecar is missing, corrupt
+     * or stale then the function is built in memory.
+     * @param indexPath the file to read
+     * @param perfectHashPath the location of the sidecar
+     * @return an Entries object
+     * @throws IOException reading failed
+     */
+    public static PerfectHashEntries of(Path indexPath, Path perfectHashPath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        MinimalPerfectHash hash = read(perfectHashPath, attributes.size(), attributes.lastModifiedTime().toMillis());
+        IndexParser.ParsedIndex parsed = IndexParser.parse(indexPath);
+        PerfectHashEntries entries = hash != null ? place(parsed, hash) : null;
+        return entries != null ? entries : build(parsed);
+    }
+
+    /**
+     * Parse an index file, build its hash function and write it to a sidecar.
+     * @param indexPath the file to read
+     * @param perfectHashPath the location of the sidecar
+     * @throws IOException reading or writing failed
+     */
+    public static void write(Path indexPath, Path perfectHashPath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        MinimalPerfectHash hash = build(IndexParser.parse(indexPath)).hash;
+
+        // write to a temporary file first so that readers never observe a partially written sidecar
+        Path tmpPath = perfectHashPath.resolveSibling(perfectHashPath.getFileName() + FileBundle.TMP_EXT);
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)), crc))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(attributes.size());
+            out.writeLong(attributes.lastModifiedTime().toMillis());
+            hash.writeTo(out);
+            out.writeInt((int) crc.getValue());
+        }
+        Files.move(tmpPath, perfectHashPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the hash function of a sidecar.
+     * @param perfectHashPath the location of the sidecar
+     * @param sourceSize the expected size of the index file
+     * @param sourceModified the expected modification time of the index file
+     * @return the function, or null if the sidecar is missing, corrupt or stale
+     */
+    static MinimalPerfectHash read(Path perfectHashPath, long sourceSize, long sourceModified) {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(perfectHashPath)), crc))) {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION || in.readLong() != sourceSize || in.readLong() != sourceModified) {
+                return null;
+            }
+            MinimalPerfectHash hash = MinimalPerfectHash.readFrom(in);
+            int expected = (int) crc.getValue();
+            return in.readInt() == expected ? hash : null;
+        } catch (IOException e) {
+            // missing, truncated or malformed sidecar
+            return null;
+        }
+    }
+
+    /**
+     * Build a hash function over the distinct filenames of an index. Distinct filenames with identical 64-bit hashes
+     * are practically impossible, but if they occur then another seed is tried.
+     */
+    private static PerfectHashEntries build(IndexParser.ParsedIndex parsed) throws IOException {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long seed = attempt;
+            long[] hashes = new long[parsed.size];
+            for (int i = 0; i < parsed.size; i++) {
+                hashes[i] = Hashing.hash64(parsed.names, parsed.nameStarts[i], parsed.nameStarts[i + 1], seed);
+            }
+            // duplicate filenames have equal hashes
+            Arrays.sort(hashes);
+            int distinct = 0;
+            for (int i = 0; i < hashes.length; i++) {
+                if (i == 0 || hashes[i] != hashes[i - 1]) {
+                    hashes[distinct++] = hashes[i];
+                }
+            }
+
+            PerfectHashEntries entries = place(parsed, MinimalPerfectHash.build(Arrays.copyOf(hashes, distinct), seed));
+            if (entries != null) {
+                return entries;
+            }
+        }
+        throw new IOException("Failed to build perfect hash function");
+    }
+
+    /**
+     * Order the lines of an index by their slot. Later occurrences of a filename shadow earlier ones.
+     * @return the entries, or null if the function doesn't match the filenames of the index
+     */
+    private static PerfectHashEntries place(IndexParser.ParsedIndex parsed, MinimalPerfectHash hash) {
+        int size = hash.size();
+        // line + 1 of each slot, 0 marks empty slots
+        int[] lines = new int[size];
+        for (int i = 0; i < parsed.size; i++) {
+            int start = parsed.nameStarts[i];
+            int end = parsed.nameStarts[i + 1];
+            int slot = hash.slot(Hashing.hash64(parsed.names, start, end, hash.seed()));
+            if (slot < 0 || slot >= size) {
+                return null;
+            }
+            int other = lines[slot] - 1;
+            if (other >= 0 && !Arrays.equals(parsed.names, start, end, parsed.names, parsed.nameStarts[other], parsed.nameStarts[other + 1])) {
+                return null;
+            }
+            lines[slot] = i + 1;
+        }
+
+        int[] nameStarts = new int[size + 1];
+        long[] offsets = new long[size];
+        int[] lengths = new int[size];
+        int nameEnd = 0;
+        for (int slot = 0; slot < size; slot++) {
+            int line = lines[slot] - 1;
+            if (line < 0) {
+                return null;
+            }
+            nameStarts[slot] = nameEnd;
+            nameEnd += parsed.nameStarts[line + 1] - parsed.nameStarts[line];
+            offsets[slot] = parsed.offsets[line];
+            lengths[slot] = parsed.lengths[line];
+        }
+        nameStarts[size] = nameEnd;
+
+        byte[] names = new byte[nameEnd];
+        for (int slot = 0; slot < size; slot++) {
+            int line = lines[slot] - 1;
+            System.arraycopy(parsed.names, parsed.nameStarts[line], names, nameStarts[slot], nameStarts[slot + 1] - nameStarts[slot]);
+        }
+        return new PerfectHashEntries(hash, names, nameStarts, offsets, lengths);
+    }
+
+    @Override
+    public int getIndex(String filename) {
+        long h = Hashing.hash64Ascii(filename, hash.seed());
+        if (h == Hashing.NOT_ASCII) {
+            byte[] key = filename.getBytes(StandardCharsets.UTF_8);
+            int slot = hash.slot(Hashing.hash64(key, hash.seed()));
+            return slot >= 0 && keyEquals(slot, key) ? slot : -1;
+        }
+        int slot = hash.slot(h);
+        return slot >= 0 && keyEquals(slot, filename) ? slot : -1;
+    }
+
+    private boolean keyEquals(int slot, byte[] key) {
+        return Arrays.equals(names, nameStarts[slot], nameStarts[slot + 1], key, 0, key.length);
+    }
+
+    /**
+     * Compare to an ASCII-only filename without encoding it.
+     */
+    private boolean keyEquals(int slot, String key) {
+        int start = nameStarts[slot];
+        int length = key.length();
+        if (nameStarts[slot + 1] - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (names[start + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getOffset(int index) {
+        return offsets[index];
+    }
+
+    @Override
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * Decode the filename of an entry.
+     * @param index the index of the entry
+     * @return the filename
+     */
+    public String getFilename(int index) {
+        int start = nameStarts[index];
+        return new String(names, start, nameStarts[index + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Stream<String> filenames() {
+        return IntStream.range(0, size()).mapToObj(this::getFilename);
+    }
+
+    @Override
+    public Stream<String> filenames(String prefix) {
+        SortedNames sorted = sortedNames;
+        if (sorted == null) {
+            sorted = SortedNames.of(new SortedNames.Source() {
+                @Override
+                public int start(int index) {
+                    return nameStarts[index];
+                }
+
+                @Override
+                public int end(int index) {
+                    return nameStarts[index + 1];
+                }
+
+                @Override
+                public byte get(int position) {
+                    return names[position];
+                }
+
+                @Override
+                public String decode(int index) {
+                    return getFilename(index);
+                }
+            }, IntStream.range(0, size()));
+            sortedNames = sorted;
+        }
+        return sorted.withPrefix(prefix);
+    }
+
+    @Override
+    public long memoryUsage() {
+        return names.length + (long) Integer.BYTES * (nameStarts.length + lengths.length) + (long) Long.BYTES * offsets.length + hash.sizeInBits() / 8;
+    }
+
+    @Override
+    public int size() {
+        return hash.size();
+    }
+
+    /**
+     * The memory required by the hash function.
+     * @return the number of bits per entry
+     */
+    double bitsPerEntry() {
+        return size() == 0 ? 0 : hash.sizeInBits() / (double) size();
+    }
+}
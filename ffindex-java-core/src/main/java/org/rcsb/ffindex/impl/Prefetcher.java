@@ -0,0 +1,81 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.Prefetch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the regions of a plan step by step on the executor of a bundle and discards the content. Steps are delayed to
+ * keep below the bandwidth. Steps run one after another, so fields need no synchronization.
+ */
+final class Prefetcher implements Callable<Void> {
+    private final AbstractFileBundle bundle;
+    private final ReadPlan plan;
+    private final Prefetch prefetch;
+    private final long bytesPerSecond;
+    private final long startNanos;
+    private ByteBuffer buffer;
+    private int region;
+    private long offset;
+    private long readBytes;
+
+    /**
+     * Prepare prefetching, which starts with {@link #schedule()}.
+     * @param bundle reads the data file
+     * @param plan the regions to read
+     * @param prefetch receives the progress
+     * @param bytesPerSecond the bandwidth, {@link Prefetch#UNLIMITED} to read as fast as possible
+     */
+    Prefetcher(AbstractFileBundle bundle, ReadPlan plan, Prefetch prefetch, long bytesPerSecond) {
+        this.bundle = bundle;
+        this.plan = plan;
+        this.prefetch = prefetch;
+        this.bytesPerSecond = bytesPerSecond;
+        this.startNanos = System.nanoTime();
+        this.offset = plan.regionCount() > 0 ? plan.regionStart(0) : 0;
+    }
+
+    @Override
+    public Void call() throws IOException {
+        if (prefetch.getCompletion().isDone()) {
+            return null;
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(AbstractFileBundle.PREFETCH_STEP);
+        }
+        int length = (int) Math.min(AbstractFileBundle.PREFETCH_STEP, plan.regionEnd(region) - offset);
+        buffer.clear();
+        bundle.readFully(offset, length, buffer);
+        prefetch.record(length);
+        readBytes += length;
+        offset += length;
+        if (offset >= plan.regionEnd(region) && ++region < plan.regionCount()) {
+            offset = plan.regionStart(region);
+        }
+        schedule();
+        return null;
+    }
+
+    /**
+     * Submit the next step, or complete once all regions were read.
+     */
+    void schedule() {
+        if (region >= plan.regionCount()) {
+            prefetch.getCompletion().complete(null);
+            return;
+        }
+        long delay = bytesPerSecond == Prefetch.UNLIMITED ? 0 :
+                (long) (readBytes * 1e9 / bytesPerSecond) - (System.nanoTime() - startNanos);
+        Executor executor = delay > 0 ? CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS) : Runnable::run;
+        executor.execute(() -> bundle.readAsync(this).whenComplete((result, t) -> {
+            if (t != null) {
+                prefetch.getCompletion().completeExceptionally(t);
+            }
+        }));
+    }
+}
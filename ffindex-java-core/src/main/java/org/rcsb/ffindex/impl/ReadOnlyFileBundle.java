@@ -1,47 +1,85 @@
 package org.rcsb.ffindex.impl;
 
-import org.rcsb.ffindex.ReadableFileBundle;
+import org.rcsb.ffindex.ContentCache;
+import org.rcsb.ffindex.Entries;
+import org.rcsb.ffindex.ReadStrategy;
 
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.NoSuchFileException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.stream.Stream;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
 
 /**
  * A bundle that supports only read operations.
  */
-public class ReadOnlyFileBundle extends AbstractFileBundle implements ReadableFileBundle {
-    private final ImmutableEntries entries;
+public class ReadOnlyFileBundle extends AbstractReadableFileBundle {
+    private final Entries entries;
+    private final ContentCache contentCache;
+    // identifies the content of the data file in the cache
+    private final Object dataFileKey;
 
     public ReadOnlyFileBundle(Path dataPath, Path indexPath) throws IOException {
-        super(dataPath, indexPath, "r");
-        this.entries = ImmutableEntries.of(indexPath);
+        this(dataPath, indexPath, ImmutableEntries.of(indexPath), ReadStrategy.MAP_PER_READ, BoundedExecutor.ofDefault(), null);
     }
 
-    @Override
-    public ByteBuffer readFile(String filename) throws IOException {
-        int index = entries.getIndex(filename);
-        if (index == -1) {
-            throw new NoSuchFileException("No file with name '" + filename + "'");
-        }
-        return dataFileChannel.map(FileChannel.MapMode.READ_ONLY, entries.getOffset(index), (long) entries.getLength(index) - FILE_END_LENGTH);
+    /**
+     * Create a bundle on top of entries that were already read, as configured by
+     * {@link org.rcsb.ffindex.FileBundleIO.ModeStep}, which is the intended way to open bundles with options.
+     * @param dataPath the location of the data file
+     * @param indexPath the location of the index file
+     * @param entries the content of the index file
+     * @param readStrategy how content is read from the data file
+     * @param readExecutor runs asynchronous reads
+     * @param contentCache holds the content of frequently read files, may be null
+     * @throws IOException opening the data file failed
+     */
+    public ReadOnlyFileBundle(Path dataPath, Path indexPath, Entries entries, ReadStrategy readStrategy, BoundedExecutor readExecutor, ContentCache contentCache) throws IOException {
+        super(dataPath, indexPath, "r", readStrategy, readExecutor);
+        this.entries = entries;
+        this.contentCache = contentCache;
+        this.dataFileKey = contentCache != null ? dataFileKey(dataPath) : null;
+    }
+
+    /**
+     * The file key alone may be reused by a new file once the data file is replaced, e.g. by compaction.
+     */
+    private static Object dataFileKey(Path dataPath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(dataPath, BasicFileAttributes.class);
+        return List.of(dataPath.toAbsolutePath().normalize(), String.valueOf(attributes.fileKey()), attributes.size(), attributes.lastModifiedTime().toMillis());
     }
 
     @Override
-    public boolean containsFile(String filename) {
-        return entries.getIndex(filename) != -1;
+    Entries getEntries() {
+        return entries;
     }
 
     @Override
-    public int fileCount() {
-        return entries.size();
+    public ByteBuffer readFile(String filename) throws IOException {
+        if (contentCache == null) {
+            return super.readFile(filename);
+        }
+        int index = requireIndex(filename);
+        long offset = entries.getOffset(index);
+        int length = bufferLength(filename, entries, index);
+        return contentCache.get(dataFileKey, offset, length, target -> readData(offset, length, target));
     }
 
     @Override
-    public Stream<String> filenames() {
-        return entries.filenames();
+    public int readFile(String filename, ByteBuffer target) throws IOException {
+        if (contentCache == null) {
+            return super.readFile(filename, target);
+        }
+        int index = requireIndex(filename);
+        long offset = entries.getOffset(index);
+        int length = bufferLength(filename, entries, index);
+        if (target.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        target.put(contentCache.get(dataFileKey, offset, length, buffer -> readData(offset, length, buffer)));
+        return length;
     }
 
     @Override
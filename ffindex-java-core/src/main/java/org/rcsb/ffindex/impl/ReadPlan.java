@@ -0,0 +1,233 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.Entries;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+
+import static org.rcsb.ffindex.FileBundle.FILE_END_LENGTH;
+
+/**
+ * The files of a batch read, sorted by their offsets and grouped into regions of the data file that are read at once.
+ * Files that are close to each other share a region, so the data file is traversed sequentially with few large reads.
+ */
+final class ReadPlan {
+    private final String[] names;
+    private final long[] offsets;
+    private final long[] lengths;
+    // region i covers the files from firsts[i] to firsts[i + 1]
+    private final int[] firsts;
+    private final long[] ends;
+    private int regionCount;
+
+    private ReadPlan(String[] names, long[] offsets, long[] lengths, int maxGap, int maxRegion) {
+        this.names = names;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.firsts = new int[names.length + 1];
+        this.ends = new long[names.length];
+        int first = 0;
+        while (first < names.length) {
+            int last = group(first, names.length, maxGap, maxRegion);
+            firsts[regionCount] = first;
+            ends[regionCount] = end(first, last);
+            regionCount++;
+            first = last;
+        }
+        firsts[regionCount] = names.length;
+    }
+
+    /**
+     * Plan the read of some files.
+     * @param filenames the files to read, duplicates are read once
+     * @param entries resolves filenames
+     * @param maxGap regions include gaps of up to this size between files
+     * @param maxRegion regions don't grow beyond this size, unless they consist of a single file, 0 reads each file on
+     *                  its own
+     * @return a new instance
+     * @throws NoSuchFileException any file doesn't exist
+     */
+    static ReadPlan of(String[] filenames, Entries entries, int maxGap, int maxRegion) throws NoSuchFileException {
+        int[] order = new int[filenames.length];
+        int[] indices = new int[filenames.length];
+        long[] resolved = new long[filenames.length];
+        for (int i = 0; i < filenames.length; i++) {
+            indices[i] = AbstractFileBundle.requireIndex(entries, filenames[i]);
+            resolved[i] = entries.getOffset(indices[i]);
+            order[i] = i;
+        }
+        // duplicates become neighbors, even if other files share their offset
+        IntSort.sort(order, (a, b) -> {
+            int comparison = Long.compare(resolved[a], resolved[b]);
+            return comparison != 0 ? comparison : Integer.compare(indices[a], indices[b]);
+        });
+
+        String[] names = new String[order.length];
+        long[] offsets = new long[order.length];
+        long[] lengths = new long[order.length];
+        int size = 0;
+        int previous = -1;
+        for (int i : order) {
+            if (indices[i] == previous) {
+                continue;
+            }
+            previous = indices[i];
+            names[size] = filenames[i];
+            offsets[size] = resolved[i];
+            lengths[size] = entries.getLongLength(indices[i]);
+            size++;
+        }
+        return new ReadPlan(Arrays.copyOf(names, size), Arrays.copyOf(offsets, size), Arrays.copyOf(lengths, size),
+                maxGap, maxRegion);
+    }
+
+    /**
+     * Ensure that the content of each file fits into a buffer.
+     * @return this plan
+     * @throws IOException any file is larger than a buffer can hold
+     */
+    ReadPlan requireBufferSizes() throws IOException {
+        for (int file = 0; file < names.length; file++) {
+            if (lengths[file] - FILE_END_LENGTH > Integer.MAX_VALUE) {
+                throw AbstractFileBundle.tooLarge(names[file]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Group files into a region, extended while the next file starts close to the end of the region.
+     * @param first the first file of the region
+     * @param end the files to consider end here, exclusive
+     * @param maxGap the largest gap between files of the region
+     * @param maxRegion the size of the region, exceeded only by a single file
+     * @return the end of the files of the region, exclusive
+     */
+    int group(int first, int end, int maxGap, int maxRegion) {
+        long start = offsets[first];
+        long regionEnd = start + lengths[first];
+        int last = first + 1;
+        while (last < end) {
+            long fileEnd = Math.max(regionEnd, offsets[last] + lengths[last]);
+            if (offsets[last] - regionEnd > maxGap || fileEnd - start > maxRegion) {
+                break;
+            }
+            regionEnd = fileEnd;
+            last++;
+        }
+        return last;
+    }
+
+    /**
+     * The end of some files in the data file.
+     * @param first the first file
+     * @param end the end of the files, exclusive
+     * @return the largest end offset of these files, exclusive
+     */
+    long end(int first, int end) {
+        long max = 0;
+        for (int file = first; file < end; file++) {
+            max = Math.max(max, offsets[file] + lengths[file]);
+        }
+        return max;
+    }
+
+    /**
+     * The index of the first file that starts at or after an offset.
+     * @param offset the offset
+     * @return the index of a file, the number of files if no file starts there
+     */
+    int fileAt(long offset) {
+        int index = Arrays.binarySearch(offsets, offset);
+        if (index < 0) {
+            return -index - 1;
+        }
+        // several files may start at the same offset
+        while (index > 0 && offsets[index - 1] == offset) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * The number of distinct files.
+     * @return an int
+     */
+    int fileCount() {
+        return names.length;
+    }
+
+    /**
+     * The number of regions.
+     * @return an int
+     */
+    int regionCount() {
+        return regionCount;
+    }
+
+    /**
+     * The start of a region in the data file.
+     * @param region the index of the region
+     * @return an offset
+     */
+    long regionStart(int region) {
+        return offsets[firsts[region]];
+    }
+
+    /**
+     * The end of a region in the data file, exclusive.
+     * @param region the index of the region
+     * @return an offset
+     */
+    long regionEnd(int region) {
+        return ends[region];
+    }
+
+    /**
+     * The size of the largest region.
+     * @return a number of bytes
+     */
+    long maxRegionLength() {
+        long max = 0;
+        for (int region = 0; region < regionCount; region++) {
+            max = Math.max(max, regionEnd(region) - regionStart(region));
+        }
+        return max;
+    }
+
+    /**
+     * The first file of a region.
+     * @param region the index of the region
+     * @return the index of the file
+     */
+    int firstFile(int region) {
+        return firsts[region];
+    }
+
+    /**
+     * The end of the files of a region, exclusive.
+     * @param region the index of the region
+     * @return the index of the first file of the next region
+     */
+    int endFile(int region) {
+        return firsts[region + 1];
+    }
+
+    String filename(int file) {
+        return names[file];
+    }
+
+    long offset(int file) {
+        return offsets[file];
+    }
+
+    /**
+     * The length of the content of a file, without the end marker. Requires {@link #requireBufferSizes()}.
+     * @param file the index of the file
+     * @return a number of bytes
+     */
+    int length(int file) {
+        return (int) (lengths[file] - FILE_END_LENGTH);
+    }
+}
@@ -1,30 +1,43 @@
 package org.rcsb.ffindex.impl;
 
 import org.rcsb.ffindex.AppendableFileBundle;
-import org.rcsb.ffindex.FileBundle;
+import org.rcsb.ffindex.Entries;
+import org.rcsb.ffindex.ReadStrategy;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.stream.Stream;
 
 /**
  * A bundle that supports reading and writing. Can be opened on existing files. Files added will be written to the
- * underlying files and can be read-back immediately.
+ * underlying files and can be read-back immediately. Index entries are written in batches, see {@link #flush()}.
  */
-public class ReadWriteFileBundle extends AbstractFileBundle implements AppendableFileBundle {
+public class ReadWriteFileBundle extends AbstractReadableFileBundle implements AppendableFileBundle {
     private final WriteLock writeLock = new WriteLock();
     private final FileChannel indexFileChannel;
+    private final IndexWriter indexWriter;
     private final MutableEntries entries;
     private long offset;
 
     public ReadWriteFileBundle(Path dataPath, Path indexPath) throws IOException {
-        super(dataPath, indexPath, "rw");
+        this(dataPath, indexPath, ReadStrategy.MAP_PER_READ, BoundedExecutor.ofDefault());
+    }
+
+    /**
+     * Open a bundle for reading and writing, as configured by {@link org.rcsb.ffindex.FileBundleIO.ModeStep}, which is
+     * the intended way to open bundles with options.
+     * @param dataPath the location of the data file
+     * @param indexPath the location of the index file
+     * @param readStrategy how content is read from the data file
+     * @param readExecutor runs asynchronous reads
+     * @throws IOException opening or reading failed
+     */
+    public ReadWriteFileBundle(Path dataPath, Path indexPath, ReadStrategy readStrategy, BoundedExecutor readExecutor) throws IOException {
+        super(dataPath, indexPath, "rw", readStrategy, readExecutor);
         this.indexFileChannel = new FileOutputStream(indexPath.toFile(), true).getChannel();
+        this.indexWriter = new IndexWriter(indexFileChannel, null);
         this.entries = MutableEntries.of(indexPath);
         this.offset = 0;
         if (entries.size() > 0) {
@@ -37,33 +50,14 @@ public class ReadWriteFileBundle extends AbstractFileBundle implements Appendabl
                     index = i;
                 }
             }
-            this.offset = largestOffset + entries.getLength(index);
+            this.offset = largestOffset + entries.getLongLength(index);
             dataFileChannel.position(offset);
         }
     }
 
     @Override
-    public ByteBuffer readFile(String filename) throws IOException {
-        int index = entries.getIndex(filename);
-        if (index == -1) {
-            throw new NoSuchFileException("No file with name '" + filename + "'");
-        }
-        return dataFileChannel.map(FileChannel.MapMode.READ_ONLY, entries.getOffset(index), (long) entries.getLength(index) - FILE_END_LENGTH);
-    }
-
-    @Override
-    public boolean containsFile(String filename) {
-        return entries.getIndex(filename) != -1;
-    }
-
-    @Override
-    public int fileCount() {
-        return entries.size();
-    }
-
-    @Override
-    public Stream<String> filenames() {
-        return entries.filenames();
+    Entries getEntries() {
+        return entries;
     }
 
     @Override
@@ -72,32 +66,41 @@ public class ReadWriteFileBundle extends AbstractFileBundle implements Appendabl
             throw new IllegalStateException("File '" + filename + "' already exists - write to a new file if you want to update existing content");
         }
 
-        int length = byteBuffer.limit() + FILE_END_LENGTH; // separated by NUL
+        int length = byteBuffer.remaining() + FILE_END_LENGTH; // separated by NUL
         synchronized (writeLock) {
-            writeIndexEntry(filename, length);
             writeData(byteBuffer);
+            entries.addFile(filename, offset, length);
+            indexWriter.append(filename, offset, length);
+            offset += length;
         }
     }
 
-    private void writeIndexEntry(String filename, int length) throws IOException {
-        entries.addFile(filename, offset, length);
-        String line = filename + INDEX_ENTRY_DELIMITER +
-                offset + INDEX_ENTRY_DELIMITER +
-                length + FileBundle.LINE_END;
-        ByteBuffer out = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
-        indexFileChannel.write(out);
+    /**
+     * Content isn't buffered, so that it can be read back immediately. The file and its end marker are written by one
+     * gathering write.
+     */
+    private void writeData(ByteBuffer byteBuffer) throws IOException {
+        ByteBuffer[] sources = { byteBuffer, FILE_END_BUFFER.duplicate().rewind() };
+        while (sources[1].hasRemaining()) {
+            dataFileChannel.write(sources);
+        }
     }
 
-    private void writeData(ByteBuffer byteBuffer) throws IOException {
-        offset += dataFileChannel.write(byteBuffer);
-        FILE_END_BUFFER.rewind();
-        offset += dataFileChannel.write(FILE_END_BUFFER);
+    @Override
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            indexWriter.flush();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        indexFileChannel.close();
-        dataFileChannel.close();
-        dataFile.close();
+        try {
+            flush();
+        } finally {
+            indexFileChannel.close();
+            dataFileChannel.close();
+            dataFile.close();
+        }
     }
 }
@@ -0,0 +1,124 @@
+package org.rcsb.ffindex.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * A sequential pass over the regions of a plan, which reads the data file in chunks into two buffers: while the
+ * consumer processes one chunk, the next one is read on the executor of the bundle. If the executor hasn't started the
+ * read by the time it's needed, the calling thread reads the chunk itself.
+ */
+final class Scan {
+    private final AbstractFileBundle bundle;
+    private final ReadPlan plan;
+    private final ByteBuffer[] chunks;
+    private final int capacity;
+
+    /**
+     * Prepare a scan.
+     * @param bundle reads the data file
+     * @param plan the files to read, regions must fit into a buffer
+     * @param maxChunk the size of the reused buffers, larger regions are read into buffers of their own
+     */
+    Scan(AbstractFileBundle bundle, ReadPlan plan, int maxChunk) {
+        this.bundle = bundle;
+        this.plan = plan;
+        this.chunks = new ByteBuffer[2];
+        this.capacity = (int) Math.min(maxChunk, plan.maxRegionLength());
+    }
+
+    /**
+     * Read all files of the plan in the order of their offsets.
+     * @param consumer receives filename and read-only content of each file, which is only valid until consumer returns
+     * @throws IOException reading failed
+     */
+    void forEach(BiConsumer<String, ByteBuffer> consumer) throws IOException {
+        ReadAhead next = plan.regionCount() > 0 ? new ReadAhead(0) : null;
+        try {
+            for (int region = 0; region < plan.regionCount(); region++) {
+                ByteBuffer chunk = next.get();
+                // the other buffer is free again, its region was consumed
+                next = region + 1 < plan.regionCount() ? new ReadAhead(region + 1) : null;
+
+                long start = plan.regionStart(region);
+                for (int file = plan.firstFile(region); file < plan.endFile(region); file++) {
+                    consumer.accept(plan.filename(file), AbstractFileBundle.slice(chunk, plan.offset(file) - start, plan.length(file)));
+                }
+            }
+        } finally {
+            if (next != null) {
+                next.cancel();
+            }
+        }
+    }
+
+    /**
+     * Reads a region, either on the executor of the bundle or, if it didn't start yet, on the thread that needs the
+     * region.
+     */
+    private final class ReadAhead implements Callable<ByteBuffer> {
+        private final long offset;
+        private final int length;
+        private final ByteBuffer chunk;
+        private final AtomicBoolean claimed;
+        private final CompletableFuture<ByteBuffer> future;
+
+        ReadAhead(int region) {
+            this.offset = plan.regionStart(region);
+            this.length = (int) (plan.regionEnd(region) - offset);
+            int slot = region % 2;
+            if (length > capacity) {
+                this.chunk = ByteBuffer.allocate(length);
+            } else {
+                if (chunks[slot] == null) {
+                    chunks[slot] = ByteBuffer.allocateDirect(capacity);
+                }
+                this.chunk = chunks[slot];
+            }
+            this.claimed = new AtomicBoolean();
+            this.future = bundle.readAsync(this);
+        }
+
+        @Override
+        public ByteBuffer call() throws IOException {
+            return claimed.compareAndSet(false, true) ? read() : null;
+        }
+
+        private ByteBuffer read() throws IOException {
+            chunk.clear();
+            bundle.readFully(offset, length, chunk);
+            return chunk.flip().asReadOnlyBuffer();
+        }
+
+        ByteBuffer get() throws IOException {
+            if (claimed.compareAndSet(false, true)) {
+                // all permits of the executor are taken, possibly by the caller itself
+                future.cancel(false);
+                return read();
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading ahead");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to read ahead", e.getCause());
+            }
+        }
+
+        void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                future.cancel(false);
+            }
+        }
+    }
+}
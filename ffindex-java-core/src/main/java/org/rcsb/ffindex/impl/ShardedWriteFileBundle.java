@@ -0,0 +1,191 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.WritableFileBundle;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A write-only bundle that gives each writing thread a private shard, a {@link WriteOnlyFileBundle} on temporary files
+ * next to the data file. Threads never wait for each other. On {@link #close()}, the data of all shards is transferred
+ * to the data file, without copying it into the JVM, and their index entries are appended to the index file with
+ * offsets rebased to the position of the shard. The result is a single standard bundle, whose files are ordered by
+ * shard. Temporary files are removed once all shards were merged. If merging fails, they are kept as the only complete
+ * copy of the written content and named by the exception -- move them aside before opening the bundle in sharded mode
+ * again, which would overwrite them.
+ *
+ * <p>Unless duplicates are rejected, this bundle doesn't check that written files have unique names, like
+ * {@link WriteOnlyFileBundle}. All writes have to return before the bundle is closed, writes that start afterwards fail
+ * with an {@link IllegalStateException}.
+ */
+public class ShardedWriteFileBundle extends AbstractFileBundle implements WritableFileBundle {
+    private final FileChannel indexFileChannel;
+    private final ThreadLocal<WriteOnlyFileBundle> shard;
+    // registration and close synchronize on shards, so no shard is registered once the bundle is closed
+    private final List<WriteOnlyFileBundle> shards;
+    private final Set<String> filenames;
+    private volatile boolean closed;
+
+    /**
+     * Create a sharded bundle.
+     * @param dataPath the location of the data file
+     * @param indexPath the location of the index file
+     * @param rejectDuplicates reject files whose name was written before, which tracks all names in memory
+     * @throws FileNotFoundException opening failed
+     */
+    public ShardedWriteFileBundle(Path dataPath, Path indexPath, boolean rejectDuplicates) throws FileNotFoundException {
+        super(dataPath, indexPath, "rw");
+        this.indexFileChannel = new FileOutputStream(indexPath.toFile(), true).getChannel();
+        this.shard = new ThreadLocal<>();
+        this.shards = new CopyOnWriteArrayList<>();
+        this.filenames = rejectDuplicates ? ConcurrentHashMap.newKeySet() : null;
+    }
+
+    @Override
+    public void writeFile(String filename, ByteBuffer byteBuffer) throws IOException {
+        WriteOnlyFileBundle current = shard();
+        if (filenames != null && !filenames.add(filename)) {
+            throw new IllegalStateException("File '" + filename + "' already exists - write to a new file if you want to update existing content");
+        }
+        current.writeFile(filename, byteBuffer);
+    }
+
+    private WriteOnlyFileBundle shard() throws IOException {
+        // the shard of this thread is closed as well
+        if (closed) {
+            throw new IllegalStateException("Bundle is closed");
+        }
+        WriteOnlyFileBundle current = shard.get();
+        if (current != null) {
+            return current;
+        }
+
+        // registers once per thread
+        synchronized (shards) {
+            if (closed) {
+                throw new IllegalStateException("Bundle is closed");
+            }
+            String suffix = "." + shards.size() + TMP_EXT;
+            Path shardDataPath = dataPath.resolveSibling(dataPath.getFileName() + suffix);
+            Path shardIndexPath = indexPath.resolveSibling(indexPath.getFileName() + suffix);
+            // leftovers of a failed bundle would be appended to
+            Files.deleteIfExists(shardDataPath);
+            Files.deleteIfExists(shardIndexPath);
+            current = new WriteOnlyFileBundle(shardDataPath, shardIndexPath);
+            shards.add(current);
+        }
+        shard.set(current);
+        return current;
+    }
+
+    /**
+     * Writes buffered content of all shards to their temporary files. Content only reaches the data file of this bundle
+     * on {@link #close()}.
+     * @throws IOException writing failed
+     */
+    @Override
+    public void flush() throws IOException {
+        for (WriteOnlyFileBundle current : shards) {
+            current.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<WriteOnlyFileBundle> closing;
+        synchronized (shards) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closing = List.copyOf(shards);
+        }
+
+        try {
+            try {
+                closeShards(closing);
+                IndexWriter indexWriter = new IndexWriter(indexFileChannel, null);
+                long base = 0;
+                for (WriteOnlyFileBundle current : closing) {
+                    long size = transferShard(current.getDataPath(), base);
+                    IndexParser.ParsedIndex parsed = IndexParser.parse(current.getIndexPath());
+                    for (int i = 0; i < parsed.size(); i++) {
+                        indexWriter.append(parsed.getFilename(i), base + parsed.getOffset(i), parsed.getLongLength(i));
+                    }
+                    base += size;
+                }
+                indexWriter.flush();
+            } catch (IOException | RuntimeException e) {
+                // data and index file may be partially merged, the shards are all that's left
+                throw new IOException("Failed to merge shards into '" + dataPath + "', written content remains in "
+                        + shardPaths(closing), e);
+            }
+
+            for (WriteOnlyFileBundle current : closing) {
+                Files.deleteIfExists(current.getDataPath());
+                Files.deleteIfExists(current.getIndexPath());
+            }
+        } finally {
+            indexFileChannel.close();
+            dataFileChannel.close();
+            dataFile.close();
+        }
+    }
+
+    private static List<Path> shardPaths(List<WriteOnlyFileBundle> closing) {
+        List<Path> paths = new ArrayList<>();
+        for (WriteOnlyFileBundle current : closing) {
+            paths.add(current.getDataPath());
+            paths.add(current.getIndexPath());
+        }
+        return paths;
+    }
+
+    /**
+     * Close each shard once, even if closing another one fails.
+     * @throws IOException closing any shard failed, the first failure is thrown
+     */
+    private static void closeShards(List<WriteOnlyFileBundle> closing) throws IOException {
+        IOException failure = null;
+        for (WriteOnlyFileBundle current : closing) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private long transferShard(Path shardDataPath, long position) throws IOException {
+        try (FileChannel shardData = FileChannel.open(shardDataPath)) {
+            long size = shardData.size();
+            long transferred = 0;
+            while (transferred < size) {
+                long n = dataFileChannel.transferFrom(shardData, position + transferred, size - transferred);
+                if (n == 0) {
+                    throw new EOFException("Shard '" + shardDataPath + "' ends before " + size);
+                }
+                transferred += n;
+            }
+            return size;
+        }
+    }
+}
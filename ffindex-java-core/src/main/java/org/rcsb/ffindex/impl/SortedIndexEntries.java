@@ -0,0 +1,249 @@
+package org.rcsb.ffindex.impl;
+
+import org.rcsb.ffindex.Entries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+/**
+ * Entries of a sorted index file that is memory-mapped and never parsed as a whole. Lookups perform a binary search
+ * over the mapped bytes, like the original FFindex implementation does. Opening is constant-time and no heap is used
+ * per entry. The index of a file is the byte position of its line in the index file, an opaque handle in terms of
+ * {@link Entries#getIndex(String)}. Like the parsed index types, the last line of a duplicated filename wins and
+ * duplicates count once.
+ *
+ * <p>The index file must be sorted by filename (see {@link org.rcsb.ffindex.FileBundleIO#sortIndexFile(Path)}).
+ * Filenames are compared by their UTF-8 bytes, which matches the order of {@link String#compareTo(String)} for all
+ * characters of the Basic Multilingual Plane.
+ */
+public class SortedIndexEntries implements Entries {
+    private static final byte TAB = '\t';
+    private static final byte NEWLINE = '\n';
+    private final ByteBuffer index;
+    private final int limit;
+    private volatile int size = -1;
+
+    private SortedIndexEntries(ByteBuffer index) {
+        this.index = index;
+        this.limit = index.limit();
+    }
+
+    /**
+     * Map an index file. Nothing is parsed at this point.
+     * @param indexPath the file to map
+     * @return an Entries object
+     * @throws IOException reading failed or the file is larger than 2 GB
+     */
+    public static SortedIndexEntries of(Path indexPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Index file " + indexPath + " exceeds 2 GB and cannot be mapped as a whole");
+            }
+            return new SortedIndexEntries(channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize));
+        }
+    }
+
+    @Override
+    public int getIndex(String filename) {
+        byte[] key = filename.getBytes(StandardCharsets.UTF_8);
+        // [low, high) always covers complete lines, search on past a match for the last line of duplicates
+        int low = 0;
+        int high = limit;
+        int found = -1;
+        while (low < high) {
+            int lineStart = lineStart((low + high) >>> 1);
+            int comparison = compareFilename(lineStart, key);
+            if (comparison <= 0) {
+                if (comparison == 0) {
+                    found = lineStart;
+                }
+                low = lineEnd(lineStart) + 1;
+            } else {
+                high = lineStart;
+            }
+        }
+        return found;
+    }
+
+    private int lineStart(int position) {
+        while (position > 0 && index.get(position - 1) != NEWLINE) {
+            position--;
+        }
+        return position;
+    }
+
+    private int lineEnd(int position) {
+        while (position < limit && index.get(position) != NEWLINE) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Skip the lines that repeat the filename of a line, which are adjacent in a sorted index.
+     * @return the start of the next line with another filename, or the limit
+     */
+    private int nextFilename(int lineStart) {
+        int position = lineEnd(lineStart) + 1;
+        while (position < limit && sameFilename(lineStart, position)) {
+            position = lineEnd(position) + 1;
+        }
+        return position;
+    }
+
+    private boolean sameFilename(int lineStart, int otherLineStart) {
+        for (int i = 0; ; i++) {
+            byte b = index.get(lineStart + i);
+            int position = otherLineStart + i;
+            byte other = position < limit ? index.get(position) : NEWLINE;
+            boolean filenameEnded = b == TAB || b == NEWLINE;
+            if (filenameEnded || other == TAB || other == NEWLINE) {
+                return filenameEnded && (other == TAB || other == NEWLINE);
+            }
+            if (b != other) {
+                return false;
+            }
+        }
+    }
+
+    private int fieldStart(int lineStart, int field) {
+        int position = lineStart;
+        for (int i = 0; i < field; i++) {
+            while (index.get(position) != TAB) {
+                position++;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    private int compareFilename(int lineStart, byte[] key) {
+        for (int i = 0; ; i++) {
+            int position = lineStart + i;
+            byte b = position < limit ? index.get(position) : NEWLINE;
+            boolean filenameEnded = b == TAB || b == NEWLINE;
+            if (i == key.length) {
+                return filenameEnded ? 0 : 1;
+            }
+            if (filenameEnded) {
+                return -1;
+            }
+            int comparison = Integer.compare(b & 0xff, key[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+    }
+
+    /**
+     * Compare the beginning of a filename to a prefix.
+     * @return 0 if the filename starts with the prefix
+     */
+    private int compareToPrefix(int lineStart, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            int position = lineStart + i;
+            byte b = position < limit ? index.get(position) : NEWLINE;
+            if (b == TAB || b == NEWLINE) {
+                return -1;
+            }
+            int comparison = Integer.compare(b & 0xff, prefix[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    private long parseNumber(int position) {
+        long value = 0;
+        byte b;
+        while (position < limit && (b = index.get(position)) >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            position++;
+        }
+        return value;
+    }
+
+    @Override
+    public long getOffset(int index) {
+        return parseNumber(fieldStart(index, 1));
+    }
+
+    @Override
+    public int getLength(int index) {
+        return (int) parseNumber(fieldStart(index, 2));
+    }
+
+    /**
+     * Decode the filename at a given index.
+     * @param index the index of this file
+     * @return the filename
+     */
+    public String getFilename(int index) {
+        byte[] bytes = new byte[fieldStart(index, 1) - 1 - index];
+        this.index.duplicate().position(index).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Stream<String> filenames() {
+        return Stream.iterate(0, position -> position < limit, this::nextFilename)
+                .map(this::getFilename);
+    }
+
+    /**
+     * Binary-searches the first line that starts with the prefix and reads on until the first line that doesn't.
+     * Duplicate filenames are reported once.
+     * @param prefix the prefix, the empty String matches all filenames
+     * @return matching filenames in sorted order
+     */
+    @Override
+    public Stream<String> filenames(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        // [low, high) always covers complete lines, find the first line that isn't smaller than the prefix
+        int low = 0;
+        int high = limit;
+        while (low < high) {
+            int lineStart = lineStart((low + high) >>> 1);
+            if (compareToPrefix(lineStart, key) < 0) {
+                low = lineEnd(lineStart) + 1;
+            } else {
+                high = lineStart;
+            }
+        }
+        return Stream.iterate(low, position -> position < limit && compareToPrefix(position, key) == 0, this::nextFilename)
+                .map(this::getFilename);
+    }
+
+    /**
+     * The size of the mapped index file. It is held by the page cache rather than the heap.
+     * @return a number of bytes
+     */
+    @Override
+    public long memoryUsage() {
+        return limit;
+    }
+
+    /**
+     * The number of distinct filenames. Counted on first invocation, which requires a pass over the whole index.
+     * @return an int
+     */
+    @Override
+    public int size() {
+        int s = size;
+        if (s == -1) {
+            s = 0;
+            for (int position = 0; position < limit; position = nextFilename(position)) {
+                s++;
+            }
+            size = s;
+        }
+        return s;
+    }
+}
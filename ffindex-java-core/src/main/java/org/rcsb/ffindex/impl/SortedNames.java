@@ -0,0 +1,129 @@
+package org.rcsb.ffindex.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Sorted view of filenames that answers prefix queries by binary search, so that the cost of a query depends on the
+ * number of matches rather than the number of entries. Filenames stored as UTF-8 bytes are ordered by their bytes,
+ * which matches the order of {@link String#compareTo(String)} for all characters of the Basic Multilingual Plane.
+ */
+final class SortedNames {
+    /**
+     * Random access to UTF-8 encoded filenames.
+     */
+    interface Source {
+        /**
+         * @param index the index of a filename
+         * @return the position of its first byte
+         */
+        int start(int index);
+
+        /**
+         * @param index the index of a filename
+         * @return the position after its last byte
+         */
+        int end(int index);
+
+        /**
+         * @param position a position
+         * @return the byte at that position
+         */
+        byte get(int position);
+
+        /**
+         * @param index the index of a filename
+         * @return the decoded filename
+         */
+        String decode(int index);
+    }
+
+    private final Source source;
+    private final int[] order;
+
+    private SortedNames(Source source, int[] order) {
+        this.source = source;
+        this.order = order;
+    }
+
+    /**
+     * Sort some filenames.
+     * @param source the filenames
+     * @param indices the indices of all filenames to include, must not contain duplicates
+     * @return the sorted view
+     */
+    static SortedNames of(Source source, IntStream indices) {
+        int[] order = indices.toArray();
+        IntSort.sort(order, (a, b) -> compare(source, a, b));
+        return new SortedNames(source, order);
+    }
+
+    private static int compare(Source source, int a, int b) {
+        int aStart = source.start(a);
+        int aLength = source.end(a) - aStart;
+        int bStart = source.start(b);
+        int bLength = source.end(b) - bStart;
+        for (int i = 0, length = Math.min(aLength, bLength); i < length; i++) {
+            int comparison = Integer.compare(source.get(aStart + i) & 0xff, source.get(bStart + i) & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(aLength, bLength);
+    }
+
+    /**
+     * All filenames that start with a prefix.
+     * @param prefix the prefix, the empty String matches all filenames
+     * @return matching filenames in sorted order
+     */
+    Stream<String> withPrefix(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        // find the first filename that isn't smaller than the prefix, all matches follow it
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareToPrefix(order[middle], key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return IntStream.range(low, order.length)
+                .takeWhile(position -> compareToPrefix(order[position], key) == 0)
+                .mapToObj(position -> source.decode(order[position]));
+    }
+
+    /**
+     * Compare the beginning of a filename to a prefix.
+     * @return 0 if the filename starts with the prefix
+     */
+    private int compareToPrefix(int index, byte[] prefix) {
+        int start = source.start(index);
+        int length = source.end(index) - start;
+        for (int i = 0, common = Math.min(length, prefix.length); i < common; i++) {
+            int comparison = Integer.compare(source.get(start + i) & 0xff, prefix[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return length < prefix.length ? -1 : 0;
+    }
+
+    /**
+     * All Strings of a sorted array that start with a prefix.
+     * @param sorted filenames in the order of {@link String#compareTo(String)}
+     * @param prefix the prefix
+     * @return matching filenames in sorted order
+     */
+    static Stream<String> withPrefix(String[] sorted, String prefix) {
+        int from = Arrays.binarySearch(sorted, prefix);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        return Arrays.stream(sorted, from, sorted.length).takeWhile(filename -> filename.startsWith(prefix));
+    }
+}
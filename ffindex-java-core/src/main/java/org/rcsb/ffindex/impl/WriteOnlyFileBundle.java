@@ -1,6 +1,5 @@
 package org.rcsb.ffindex.impl;
 
-import org.rcsb.ffindex.FileBundle;
 import org.rcsb.ffindex.WritableFileBundle;
 
 import java.io.FileNotFoundException;
@@ -8,50 +7,86 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 
 /**
  * A bundle that supports write operations. Note that write-only bundles don't track written files and don't check that
  * written files have unique names. The behavior is undefined if multiple files with the same name were registered.
+ *
+ * <p>Writes are buffered: the content of small files is coalesced in a buffer and index entries are written in batches
+ * of many entries, so writing a file usually doesn't cost a system call. Use {@link #flush()} to write all
+ * buffered content, {@link #close()} does so as well.
  */
 public class WriteOnlyFileBundle extends AbstractFileBundle implements WritableFileBundle {
+    /**
+     * The capacity of the buffer that coalesces the content of small files.
+     */
+    static final int DATA_BUFFER_SIZE = 1024 * 1024;
+
     private final WriteLock writeLock = new WriteLock();
     private final FileChannel indexFileChannel;
+    private final ByteBuffer dataBuffer;
+    private final IndexWriter indexWriter;
     private long offset;
 
     public WriteOnlyFileBundle(Path dataPath, Path indexPath) throws FileNotFoundException {
         super(dataPath, indexPath, "rw");
         this.indexFileChannel = new FileOutputStream(indexPath.toFile(), true).getChannel();
+        this.dataBuffer = ByteBuffer.allocateDirect(DATA_BUFFER_SIZE);
+        this.indexWriter = new IndexWriter(indexFileChannel, this::flushData);
         this.offset = 0;
     }
 
     public void writeFile(String filename, ByteBuffer byteBuffer) throws IOException {
-        int length = byteBuffer.limit() + FILE_END_LENGTH; // separated by NUL
+        int length = byteBuffer.remaining() + FILE_END_LENGTH; // separated by NUL
         synchronized (writeLock) {
-            writeIndexEntry(filename, length);
-            writeData(byteBuffer);
+            writeData(byteBuffer, length);
+            indexWriter.append(filename, offset, length);
+            offset += length;
         }
     }
 
-    private void writeIndexEntry(String filename, int length) throws IOException {
-        String line = filename + INDEX_ENTRY_DELIMITER +
-                offset + INDEX_ENTRY_DELIMITER +
-                length + FileBundle.LINE_END;
-        ByteBuffer out = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
-        indexFileChannel.write(out);
+    /**
+     * Small files are collected in the data buffer. Otherwise, the buffer, the file and its end marker are written by
+     * one gathering write.
+     */
+    private void writeData(ByteBuffer byteBuffer, int length) throws IOException {
+        if (length <= dataBuffer.remaining()) {
+            dataBuffer.put(byteBuffer);
+            dataBuffer.put(FILE_END_BUFFER.duplicate().rewind());
+            return;
+        }
+
+        ByteBuffer[] sources = { dataBuffer.flip(), byteBuffer, FILE_END_BUFFER.duplicate().rewind() };
+        while (sources[2].hasRemaining()) {
+            dataFileChannel.write(sources);
+        }
+        dataBuffer.clear();
     }
 
-    private void writeData(ByteBuffer byteBuffer) throws IOException {
-        offset += dataFileChannel.write(byteBuffer);
-        FILE_END_BUFFER.rewind();
-        offset += dataFileChannel.write(FILE_END_BUFFER);
+    private void flushData() throws IOException {
+        dataBuffer.flip();
+        while (dataBuffer.hasRemaining()) {
+            dataFileChannel.write(dataBuffer);
+        }
+        dataBuffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            indexWriter.flush();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        indexFileChannel.close();
-        dataFileChannel.close();
-        dataFile.close();
+        try {
+            flush();
+        } finally {
+            indexFileChannel.close();
+            dataFileChannel.close();
+            dataFile.close();
+        }
     }
 }
@@ -0,0 +1,143 @@
+package org.rcsb.ffindex;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentCacheTest {
+    @Test
+    void whenReadingTwice_thenContentIsServedFromCache() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        ContentCache contentCache = new ContentCache(1 << 20);
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withContentCache(contentCache).inReadOnlyMode()) {
+            assertEquals("fooo\nfooo", Conversions.toString(fileBundle.readFile("foo")));
+            ByteBuffer cached = fileBundle.readFile("foo");
+            assertTrue(cached.isReadOnly());
+            assertEquals("fooo\nfooo", Conversions.toString(cached));
+        }
+        // other bundles on the same data file share the content
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withContentCache(contentCache).inReadOnlyMode()) {
+            ByteBuffer target = ByteBuffer.allocate(16);
+            assertEquals(9, fileBundle.readFile("foo", target));
+            assertEquals("fooo\nfooo", Conversions.toString(target.flip()));
+        }
+        assertEquals(1, contentCache.getMisses());
+        assertEquals(2, contentCache.getHits());
+        assertEquals(1, contentCache.size());
+        assertEquals(9, contentCache.getWeight());
+    }
+
+    @Test
+    void whenReadConcurrently_thenContentIsLoadedOnce() throws Exception {
+        ContentCache contentCache = new ContentCache(1 << 20, true);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ByteBuffer>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> contentCache.get("file", 0, 2, target -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    try {
+                        assertTrue(release.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    target.put(Conversions.toByteBuffer("ab"));
+                })));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            release.countDown();
+
+            for (Future<ByteBuffer> future : futures) {
+                assertEquals("ab", Conversions.toString(future.get()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, contentCache.getMisses());
+        assertEquals(threads - 1, contentCache.getHits());
+    }
+
+    @Test
+    void whenLoadFails_thenNextReadRetries() throws IOException {
+        ContentCache contentCache = new ContentCache(1 << 20);
+
+        assertThrows(IOException.class, () -> contentCache.get("file", 0, 2, target -> {
+            throw new IOException("failed");
+        }));
+        assertEquals(0, contentCache.size());
+        assertEquals("ab", Conversions.toString(contentCache.get("file", 0, 2, target -> target.put(Conversions.toByteBuffer("ab")))));
+        assertEquals(1, contentCache.size());
+    }
+
+    @Test
+    void whenScanningRareFiles_thenPopularFilesStayCached() throws IOException {
+        // each stripe holds a single file
+        ContentCache contentCache = new ContentCache(16 * 100);
+        AtomicInteger loads = new AtomicInteger();
+        ContentCache.Loader loader = target -> {
+            loads.incrementAndGet();
+            target.put(new byte[60]);
+        };
+
+        for (int i = 0; i < 10; i++) {
+            contentCache.get("popular", 0, 60, loader);
+        }
+        for (int i = 1; i <= 1000; i++) {
+            contentCache.get("rare", i * 60L, 60, loader);
+        }
+        int before = loads.get();
+        contentCache.get("popular", 0, 60, loader);
+        assertEquals(before, loads.get(), "Popular file should not be displaced by a scan");
+        assertTrue(contentCache.getRejections() > 0);
+        assertTrue(contentCache.getWeight() <= 16 * 100);
+
+        // larger than a stripe: served, but not cached
+        assertEquals(1000, contentCache.get("large", 0, 1000, target -> target.put(new byte[1000])).remaining());
+        assertEquals(1000, contentCache.get("large", 0, 1000, target -> target.put(new byte[1000])).remaining());
+        assertTrue(contentCache.getWeight() <= 16 * 100);
+    }
+
+    @Test
+    void whenFileExceedsShareOfStripe_thenItIsNotCached() throws IOException {
+        ContentCache contentCache = new ContentCache(16 * 100);
+        AtomicInteger loads = new AtomicInteger();
+        ContentCache.Loader loader = target -> {
+            loads.incrementAndGet();
+            target.put(new byte[target.remaining()]);
+        };
+
+        // a 16th of the bound fits
+        contentCache.get("file", 0, 100, loader);
+        contentCache.get("file", 0, 100, loader);
+        assertEquals(1, loads.get());
+        assertEquals(1, contentCache.size());
+
+        // one byte more is loaded on every read
+        contentCache.get("file", 100, 101, loader);
+        contentCache.get("file", 100, 101, loader);
+        assertEquals(3, loads.get());
+        assertEquals(1, contentCache.size());
+        assertEquals(2, contentCache.getRejections());
+    }
+}
@@ -2,7 +2,14 @@ package org.rcsb.ffindex;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
@@ -100,6 +107,110 @@ class FileBundleIOTest {
         assertEquals(new String(TestHelper.getBytes("test.ffindex")), new String(Files.readAllBytes(testIndex1)), "index differs");
     }
 
+    @Test
+    void whenBundlingDirectory_thenAllRegularFilesAreAdded() throws IOException {
+        Path source = Files.createTempDirectory("file-bundle-test");
+        Files.createDirectories(source.resolve("x/y"));
+        Files.writeString(source.resolve("a"), "a");
+        Files.writeString(source.resolve("x/b"), "bb");
+        Files.writeString(source.resolve("x/y/foo"), "fooo\nfooo");
+        Files.writeString(source.resolve("x/skip"), "skipped");
+        Files.createFile(source.resolve("empty"));
+        Path dataPath = Files.createTempFile("file-bundle-test", "dir.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "dir.ffindex");
+        Files.delete(dataPath);
+        Files.delete(indexPath);
+
+        BundleOptions options = new BundleOptions().withFilter(filename -> !filename.endsWith("skip"));
+        assertEquals(4, FileBundleIO.bundleDirectory(source, dataPath, indexPath, options));
+        assertThrows(FileAlreadyExistsException.class, () -> FileBundleIO.bundleDirectory(source, dataPath, indexPath, options));
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            assertEquals(4, fileBundle.fileCount());
+            assertEquals("a", Conversions.toString(fileBundle.readFile("a")));
+            assertEquals("bb", Conversions.toString(fileBundle.readFile("x/b")));
+            assertEquals("fooo\nfooo", Conversions.toString(fileBundle.readFile("x/y/foo")));
+            assertEquals(0, fileBundle.readFile("empty").remaining());
+        }
+    }
+
+    @Test
+    void whenBundlingTar_thenRegularFilesAreAdded() throws IOException {
+        String longName = "dir/" + "n".repeat(150);
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, "./dir/", '5', new byte[0]);
+        writeTarEntry(tar, "./dir/a", '0', "a".getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, "PaxHeader", 'x', paxRecord("path=" + longName));
+        writeTarEntry(tar, "truncated", '0', "fooo\nfooo".getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, "link", '2', new byte[0]);
+        writeTarEntry(tar, "dir/b", '0', new byte[1000]);
+        tar.write(new byte[1024]);
+        Path tarPath = Files.createTempFile("file-bundle-test", "test.tar");
+        Files.write(tarPath, tar.toByteArray());
+
+        for (boolean fromFile : new boolean[] { false, true }) {
+            Path dataPath = Files.createTempFile("file-bundle-test", "tar.data");
+            Path indexPath = Files.createTempFile("file-bundle-test", "tar.ffindex");
+            Files.delete(dataPath);
+            Files.delete(indexPath);
+
+            try (InputStream inputStream = fromFile ? new FileInputStream(tarPath.toFile()) : new ByteArrayInputStream(tar.toByteArray())) {
+                assertEquals(3, FileBundleIO.bundleTar(inputStream, dataPath, indexPath, new BundleOptions()));
+            }
+            try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+                assertEquals(3, fileBundle.fileCount());
+                assertEquals("a", Conversions.toString(fileBundle.readFile("dir/a")));
+                assertEquals("fooo\nfooo", Conversions.toString(fileBundle.readFile(longName)));
+                assertArrayEquals(new byte[1000], Conversions.toByteArray(fileBundle.readFile("dir/b")));
+            }
+        }
+    }
+
+    @Test
+    void whenBundlingTarFails_thenNoFilesRemainAndRetrySucceeds() throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, "a", '0', "a".getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, "b", '0', new byte[1000]);
+        tar.write(new byte[1024]);
+        byte[] truncated = Arrays.copyOf(tar.toByteArray(), 1600);
+        Path dataPath = Files.createTempFile("file-bundle-test", "tar.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "tar.ffindex");
+        Files.delete(dataPath);
+        Files.delete(indexPath);
+
+        assertThrows(EOFException.class, () -> FileBundleIO.bundleTar(new ByteArrayInputStream(truncated), dataPath, indexPath, new BundleOptions()));
+        for (Path path : new Path[] { dataPath, indexPath }) {
+            assertFalse(Files.exists(path), "Partial bundle should be removed");
+            assertFalse(Files.exists(path.resolveSibling(path.getFileName() + FileBundle.TMP_EXT)), "Tmp file should be removed");
+        }
+
+        assertEquals(2, FileBundleIO.bundleTar(new ByteArrayInputStream(tar.toByteArray()), dataPath, indexPath, new BundleOptions()));
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            assertEquals("a", Conversions.toString(fileBundle.readFile("a")));
+            assertArrayEquals(new byte[1000], Conversions.toByteArray(fileBundle.readFile("b")));
+        }
+    }
+
+    private static void writeTarEntry(ByteArrayOutputStream tar, String name, char type, byte[] content) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        byte[] size = String.format("%011o", content.length).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        tar.write(header);
+        tar.write(content);
+        tar.write(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static byte[] paxRecord(String keyValue) {
+        // the length includes its own digits
+        int length = keyValue.length() + 2;
+        length += String.valueOf(length + String.valueOf(length).length()).length();
+        return (length + " " + keyValue + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
     boolean isSorted(List<String> collection) {
         if (collection.isEmpty() || collection.size() == 1) {
             return true;
@@ -0,0 +1,140 @@
+package org.rcsb.ffindex;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.impl.ImmutableEntries;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexCacheTest {
+    @Test
+    void whenOpeningBundleTwice_thenIndexIsShared() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        IndexCache indexCache = new IndexCache(1 << 20);
+
+        for (int i = 0; i < 3; i++) {
+            try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexCache(indexCache).inReadOnlyMode()) {
+                assertEquals("bb", Conversions.toString(fileBundle.readFile("b")));
+            }
+        }
+        assertEquals(1, indexCache.getMisses());
+        assertEquals(2, indexCache.getHits());
+        assertEquals(1, indexCache.size());
+        assertTrue(indexCache.getWeight() > 0);
+
+        // other options require another index
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(IndexType.COMPACT).withIndexCache(indexCache).inReadOnlyMode()) {
+            assertEquals(4, fileBundle.fileCount());
+        }
+        assertEquals(2, indexCache.getMisses());
+        assertEquals(2, indexCache.size());
+    }
+
+    @Test
+    void whenIndexChanges_thenIndexIsReloaded() throws IOException {
+        Path dataPath = TestHelper.createTempFile("part1.data");
+        Path indexPath = TestHelper.createTempFile("part1.ffindex");
+        IndexCache indexCache = new IndexCache(1 << 20);
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexCache(indexCache).inReadOnlyMode()) {
+            assertEquals(2, fileBundle.fileCount());
+        }
+
+        Files.write(dataPath, TestHelper.getBytes("part2.data"), StandardOpenOption.APPEND);
+        Files.writeString(indexPath, "c\t7\t4\n", StandardOpenOption.APPEND);
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexCache(indexCache).inReadOnlyMode()) {
+            assertEquals(3, fileBundle.fileCount());
+            assertEquals("cc", Conversions.toString(fileBundle.readFile("c")));
+        }
+        assertEquals(2, indexCache.getMisses());
+        assertEquals(1, indexCache.size(), "Previous version should be dropped");
+    }
+
+    @Test
+    void whenOpenedConcurrently_thenIndexIsLoadedOnce() throws Exception {
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        IndexCache indexCache = new IndexCache(1 << 20);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Entries>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> indexCache.get(indexPath, IndexType.HASH_MAP, 0, () -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    try {
+                        assertTrue(release.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return ImmutableEntries.of(indexPath);
+                })));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            release.countDown();
+
+            Entries first = futures.get(0).get();
+            for (Future<Entries> future : futures) {
+                assertSame(first, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, indexCache.getMisses());
+        assertEquals(threads - 1, indexCache.getHits());
+    }
+
+    @Test
+    void whenLoadFails_thenNextOpenerRetries() throws IOException {
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        IndexCache indexCache = new IndexCache(1 << 20);
+
+        assertThrows(IOException.class, () -> indexCache.get(indexPath, IndexType.HASH_MAP, 0, () -> {
+            throw new IOException("failed");
+        }));
+        assertEquals(0, indexCache.size());
+        assertEquals(4, indexCache.get(indexPath, IndexType.HASH_MAP, 0, () -> ImmutableEntries.of(indexPath)).size());
+        assertEquals(2, indexCache.getMisses());
+    }
+
+    @Test
+    void whenWeightExceeded_thenLeastRecentlyUsedIsEvicted() throws IOException {
+        Path first = TestHelper.createTempFile("test.ffindex");
+        Path second = TestHelper.createTempFile("part1.ffindex");
+        Path third = TestHelper.createTempFile("part2.ffindex");
+        // room for the first index and one of the others
+        long maxBytes = ImmutableEntries.of(first).memoryUsage() + Math.max(ImmutableEntries.of(second).memoryUsage(), ImmutableEntries.of(third).memoryUsage());
+        IndexCache indexCache = new IndexCache(maxBytes);
+
+        indexCache.get(first, IndexType.HASH_MAP, 0, () -> ImmutableEntries.of(first));
+        indexCache.get(second, IndexType.HASH_MAP, 0, () -> ImmutableEntries.of(second));
+        indexCache.get(first, IndexType.HASH_MAP, 0, () -> ImmutableEntries.of(first));
+        indexCache.get(third, IndexType.HASH_MAP, 0, () -> ImmutableEntries.of(third));
+        assertEquals(2, indexCache.size());
+        assertTrue(indexCache.getWeight() <= maxBytes);
+
+        // second was evicted, first was used more recently
+        indexCache.get(first, IndexType.HASH_MAP, 0, () -> ImmutableEntries.of(first));
+        assertEquals(3, indexCache.getMisses());
+        assertEquals(2, indexCache.getHits());
+    }
+}
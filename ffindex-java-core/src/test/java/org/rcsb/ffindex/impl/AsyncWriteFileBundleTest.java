@@ -0,0 +1,117 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.AppendableFileBundle;
+import org.rcsb.ffindex.AsyncWritableFileBundle;
+import org.rcsb.ffindex.Conversions;
+import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.ReadableFileBundle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncWriteFileBundleTest {
+    @Test
+    void whenWritingAsync_thenFuturesCompleteInOrder() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "async.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "async.ffindex");
+        Files.deleteIfExists(dataPath);
+        Files.deleteIfExists(indexPath);
+
+        int count = 1000;
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        AtomicBoolean ordered = new AtomicBoolean(true);
+        try (AsyncWritableFileBundle writableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inAsyncWriteMode(16)) {
+            CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
+            for (int i = 0; i < count; i++) {
+                CompletableFuture<Void> future = writableFileBundle.writeFileAsync("file" + i, Conversions.toByteBuffer("content of " + i));
+                CompletableFuture<Void> before = previous;
+                future.thenRun(() -> {
+                    if (!before.isDone()) {
+                        ordered.set(false);
+                    }
+                });
+                futures.add(future);
+                previous = future;
+            }
+            writableFileBundle.drain();
+            assertTrue(futures.stream().allMatch(CompletableFuture::isDone));
+            assertTrue(ordered.get());
+
+            // visible once drained, without closing
+            try (ReadableFileBundle readableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+                assertEquals(count, readableFileBundle.fileCount());
+                assertEquals("content of 17", Conversions.toString(readableFileBundle.readFile("file17")));
+            }
+        }
+    }
+
+    @Test
+    void whenDependentActionBlocks_thenWritingContinues() throws Exception {
+        Path dataPath = Files.createTempFile("file-bundle-test", "async.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "async.ffindex");
+        Files.deleteIfExists(dataPath);
+        Files.deleteIfExists(indexPath);
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        Thread testThread = Thread.currentThread();
+        try (AsyncWritableFileBundle writableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inAsyncWriteMode(16)) {
+            CompletableFuture<String> thread = writableFileBundle.writeFileAsync("a", Conversions.toByteBuffer("a"))
+                    .thenApply(result -> {
+                        // runs on the test thread if the write already completed
+                        if (Thread.currentThread() != testThread) {
+                            try {
+                                blocked.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return Thread.currentThread().getName();
+                    });
+            writableFileBundle.writeFileAsync("b", Conversions.toByteBuffer("b"));
+
+            // the I/O thread writes the next file while the action of the first one waits
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!Files.readString(indexPath).contains("b\t") && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(Files.readString(indexPath).contains("b\t"), "Second file should be written");
+            blocked.countDown();
+            assertNotEquals("ffindex-write", thread.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void whenWriteFails_thenOnlyItsFutureCompletesExceptionally() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "async.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "async.ffindex");
+
+        AppendableFileBundle appendableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadWriteMode();
+        AsyncWriteFileBundle writableFileBundle = new AsyncWriteFileBundle(appendableFileBundle, 4);
+        CompletableFuture<Void> a = writableFileBundle.writeFileAsync("a", Conversions.toByteBuffer("a"));
+        CompletableFuture<Void> duplicate = writableFileBundle.writeFileAsync("a", Conversions.toByteBuffer("reject"));
+        CompletableFuture<Void> b = writableFileBundle.writeFileAsync("b", Conversions.toByteBuffer("bb"));
+        writableFileBundle.close();
+
+        assertNull(a.join());
+        CompletionException exception = assertThrows(CompletionException.class, duplicate::join);
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertNull(b.join());
+        assertThrows(IllegalStateException.class, () -> writableFileBundle.writeFileAsync("c", Conversions.toByteBuffer("c")));
+
+        try (ReadableFileBundle readableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            assertEquals("a", Conversions.toString(readableFileBundle.readFile("a")));
+            assertEquals("bb", Conversions.toString(readableFileBundle.readFile("b")));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.Conversions;
+import org.rcsb.ffindex.FileBundle;
+import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.IndexType;
+import org.rcsb.ffindex.ReadableFileBundle;
+import org.rcsb.ffindex.TestHelper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryIndexTest {
+    @Test
+    void whenBinaryIndexWritten_thenEntriesAreMapped() throws IOException {
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        Path binaryIndexPath = binaryIndexPath(indexPath);
+        FileBundleIO.writeBinaryIndex(indexPath);
+
+        BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        CompactEntries entries = BinaryIndex.map(binaryIndexPath, attributes.size(), attributes.lastModifiedTime().toMillis());
+        assertNotNull(entries);
+        assertEquals(4, entries.size());
+        assertEquals(11, entries.getOffset(entries.getIndex("foo")));
+        assertEquals(11, entries.getLength(entries.getIndex("foo")));
+        assertEquals("c", entries.getFilename(entries.getIndex("c")));
+        assertEquals(-1, entries.getIndex("d"));
+
+        assertNull(BinaryIndex.map(binaryIndexPath, attributes.size() + 1, attributes.lastModifiedTime().toMillis()), "Stale sidecar should be rejected");
+    }
+
+    @Test
+    void whenBinaryIndexIsCorrupt_thenItIsRegenerated() throws IOException {
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        Path binaryIndexPath = binaryIndexPath(indexPath);
+        FileBundleIO.writeBinaryIndex(indexPath);
+
+        byte[] bytes = Files.readAllBytes(binaryIndexPath);
+        bytes[32]++;
+        Files.write(binaryIndexPath, bytes);
+
+        CompactEntries entries = BinaryIndex.load(indexPath, binaryIndexPath);
+        assertEquals(4, entries.size());
+        BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        assertNotNull(BinaryIndex.map(binaryIndexPath, attributes.size(), attributes.lastModifiedTime().toMillis()));
+    }
+
+    @Test
+    void whenBinaryIndexBodyIsCorrupt_thenTextIndexIsUsed() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        Path binaryIndexPath = binaryIndexPath(indexPath);
+        FileBundleIO.writeBinaryIndex(indexPath);
+
+        // overwrite the offset table right behind the header, the header stays intact
+        byte[] bytes = Files.readAllBytes(binaryIndexPath);
+        Arrays.fill(bytes, 64, 64 + Long.BYTES * 4, (byte) 0x7f);
+        Files.write(binaryIndexPath, bytes);
+        BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        assertNull(BinaryIndex.map(binaryIndexPath, attributes.size(), attributes.lastModifiedTime().toMillis()));
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(IndexType.BINARY).inReadOnlyMode()) {
+            assertEquals("fooo\nfooo", Conversions.toString(fileBundle.readFile("foo")));
+        }
+    }
+
+    @Test
+    void whenIndexChanges_thenBinaryIndexIsRegenerated() throws IOException {
+        Path dataPath = TestHelper.createTempFile("part1.data");
+        Path indexPath = TestHelper.createTempFile("part1.ffindex");
+        Path binaryIndexPath = binaryIndexPath(indexPath);
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(IndexType.BINARY).inReadOnlyMode()) {
+            assertTrue(Files.exists(binaryIndexPath), "Missing sidecar should be created");
+            assertEquals(2, fileBundle.fileCount());
+            assertEquals("bb", Conversions.toString(fileBundle.readFile("b")));
+        }
+
+        Files.write(dataPath, TestHelper.getBytes("part2.data"), StandardOpenOption.APPEND);
+        Files.writeString(indexPath, "c\t7\t4\n", StandardOpenOption.APPEND);
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(IndexType.BINARY).inReadOnlyMode()) {
+            assertEquals(3, fileBundle.fileCount());
+            assertEquals("cc", Conversions.toString(fileBundle.readFile("c")));
+        }
+    }
+
+    private static Path binaryIndexPath(Path indexPath) {
+        return indexPath.resolveSibling(indexPath.getFileName() + FileBundle.BINARY_INDEX_EXT);
+    }
+}
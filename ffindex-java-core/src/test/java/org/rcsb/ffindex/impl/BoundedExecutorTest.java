@@ -0,0 +1,68 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedExecutorTest {
+    @Test
+    void whenManyTasksSubmitted_thenConcurrencyIsBounded() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            BoundedExecutor boundedExecutor = new BoundedExecutor(executorService, 2);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            CountDownLatch started = new CountDownLatch(2);
+            CountDownLatch release = new CountDownLatch(1);
+
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                int value = i;
+                futures.add(boundedExecutor.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    started.countDown();
+                    assertTrue(release.await(10, TimeUnit.SECONDS));
+                    running.decrementAndGet();
+                    return value;
+                }));
+            }
+            // submitting never blocks, excess tasks wait
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals(2, boundedExecutor.getRunning());
+            release.countDown();
+
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i, futures.get(i).get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(2, maxRunning.get());
+            executorService.shutdown();
+            assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(0, boundedExecutor.getRunning());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    void whenExecutorRejects_thenFutureFails() {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        executorService.shutdown();
+        BoundedExecutor boundedExecutor = new BoundedExecutor(executorService, 2);
+
+        CompletableFuture<Integer> future = boundedExecutor.submit(() -> 1);
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        assertEquals(0, boundedExecutor.getRunning());
+    }
+}
@@ -0,0 +1,43 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+    @Test
+    void whenBufferReleased_thenItIsReused() {
+        BufferPool bufferPool = new BufferPool(1 << 20);
+        ByteBuffer buffer = bufferPool.acquire(3000);
+        assertEquals(0, buffer.position());
+        assertEquals(3000, buffer.limit());
+        assertEquals(4096, buffer.capacity());
+
+        bufferPool.release(buffer);
+        assertEquals(4096, bufferPool.getPooledBytes());
+        ByteBuffer reused = bufferPool.acquire(10);
+        assertSame(buffer, reused);
+        assertEquals(10, reused.limit());
+        assertEquals(0, bufferPool.getPooledBytes());
+    }
+
+    @Test
+    void whenPoolIsFull_thenReleasedBuffersAreDropped() {
+        BufferPool bufferPool = new BufferPool(8192);
+        ByteBuffer first = bufferPool.acquire(5000);
+        ByteBuffer second = bufferPool.acquire(5000);
+        bufferPool.release(first);
+        bufferPool.release(second);
+        assertEquals(8192, bufferPool.getPooledBytes());
+
+        // foreign, read-only and oversized buffers are never pooled
+        bufferPool.release(ByteBuffer.allocate(4096));
+        bufferPool.release(ByteBuffer.allocateDirect(4096).asReadOnlyBuffer());
+        ByteBuffer large = bufferPool.acquire((1 << BufferPool.MAX_SHIFT) + 1);
+        assertFalse(large.isDirect());
+        bufferPool.release(large);
+        assertEquals(8192, bufferPool.getPooledBytes());
+    }
+}
@@ -0,0 +1,40 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BundleBuilderTest {
+    @Test
+    void whenTransferFails_thenTraversalStops() throws Exception {
+        Path source = Files.createTempDirectory("file-bundle-test");
+        for (int i = 0; i < 100; i++) {
+            Files.writeString(source.resolve("file" + i), "content of " + i);
+        }
+        Path dataPath = Files.createTempFile("file-bundle-test", "failing.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "failing.ffindex");
+        ConcurrentWriteFileBundle bundle = new ConcurrentWriteFileBundle(dataPath, indexPath);
+        // every transfer fails
+        bundle.close();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicInteger visited = new AtomicInteger();
+        try {
+            assertThrows(ClosedChannelException.class, () -> BundleBuilder.addDirectory(source, bundle, filename -> visited.incrementAndGet() > 0, new BoundedExecutor(executor, 1)));
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        // the next file waits for the failing transfer
+        assertTrue(visited.get() <= 2, "Traversal should stop after the first failure, visited " + visited.get());
+    }
+}
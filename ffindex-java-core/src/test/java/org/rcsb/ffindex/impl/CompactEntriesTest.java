@@ -0,0 +1,64 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.Conversions;
+import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.IndexType;
+import org.rcsb.ffindex.ReadableFileBundle;
+import org.rcsb.ffindex.TestHelper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactEntriesTest {
+    @Test
+    void whenParsingIndex_thenEntriesMatchHashMapImplementation() throws IOException {
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        ImmutableEntries expected = ImmutableEntries.of(indexPath);
+
+        for (boolean offHeap : new boolean[] { false, true }) {
+            CompactEntries actual = CompactEntries.of(indexPath, offHeap);
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.filenames().sorted().collect(Collectors.toList()), actual.filenames().sorted().collect(Collectors.toList()));
+            for (String filename : List.of("a", "b", "c", "foo")) {
+                int index = actual.getIndex(filename);
+                assertEquals(filename, actual.getFilename(index));
+                assertEquals(expected.getOffset(expected.getIndex(filename)), actual.getOffset(index));
+                assertEquals(expected.getLength(expected.getIndex(filename)), actual.getLength(index));
+            }
+            assertEquals(-1, actual.getIndex("fo"));
+            assertEquals(-1, actual.getIndex("fooo"));
+        }
+    }
+
+    @Test
+    void whenIndexContainsDuplicates_thenLastOccurrenceWins() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "duplicates.ffindex");
+        Files.write(indexPath, List.of("a\t0\t3", "ä\t3\t4", "a\t7\t4"));
+
+        CompactEntries entries = CompactEntries.of(indexPath);
+        assertEquals(2, entries.size());
+        assertEquals(7, entries.getOffset(entries.getIndex("a")));
+        assertEquals(3, entries.getOffset(entries.getIndex("ä")));
+    }
+
+    @Test
+    void whenReadingWithCompactIndex_thenContentMatchesExpectation() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(IndexType.COMPACT_OFF_HEAP).inReadOnlyMode()) {
+            assertEquals(4, fileBundle.fileCount());
+            assertEquals("a", Conversions.toString(fileBundle.readFile("a")));
+            assertEquals("fooo\nfooo", Conversions.toString(fileBundle.readFile("foo")));
+            assertFalse(fileBundle.containsFile("d"));
+            assertThrows(NoSuchFileException.class, () -> fileBundle.readFile("d"));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.Conversions;
+import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.ReadableFileBundle;
+import org.rcsb.ffindex.TestHelper;
+import org.rcsb.ffindex.WritableFileBundle;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentWriteFileBundleTest {
+    @Test
+    void whenWritingContent_thenIndexUpdatedAndContentMatches() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "test.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "test.ffindex");
+        Files.deleteIfExists(dataPath);
+        Files.deleteIfExists(indexPath);
+
+        try (WritableFileBundle writableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inConcurrentWriteMode()) {
+            writableFileBundle.writeFile("a", Conversions.toByteBuffer("a"));
+            writableFileBundle.writeFile("b", Conversions.toByteBuffer("bb"));
+            writableFileBundle.writeFile("c", Conversions.toByteBuffer("cc"));
+            writableFileBundle.writeFile("foo", Conversions.toByteBuffer("fooo\nfooo"));
+        }
+
+        // identical to a sequentially written bundle
+        assertArrayEquals(TestHelper.getBytes("test.data"), Files.readAllBytes(dataPath));
+        try (ReadableFileBundle readableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            assertArrayEquals(TestHelper.getBytes("data/a"), Conversions.toByteArray(readableFileBundle.readFile("a")));
+            assertArrayEquals(TestHelper.getBytes("data2/foo"), Conversions.toByteArray(readableFileBundle.readFile("foo")));
+        }
+    }
+
+    @Test
+    void whenWritingFromManyThreads_thenAllFilesAreReadable() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "concurrent.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "concurrent.ffindex");
+        Files.deleteIfExists(dataPath);
+        Files.deleteIfExists(indexPath);
+
+        int count = 2000;
+        try (WritableFileBundle writableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inConcurrentWriteMode()) {
+            IntStream.range(0, count).parallel().forEach(i -> {
+                try {
+                    writableFileBundle.writeFile("file" + i, Conversions.toByteBuffer(content(i)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        try (ReadableFileBundle readableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            assertEquals(count, readableFileBundle.fileCount());
+            for (int i = 0; i < count; i++) {
+                assertEquals(content(i), Conversions.toString(readableFileBundle.readFile("file" + i)));
+            }
+        }
+    }
+
+    @Test
+    void whenMergingOntoFailedTailWrite_thenAdditionsAreRebasedBehindIt() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "failed.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "failed.ffindex");
+        Path additionsDataPath = Files.createTempFile("file-bundle-test", "additions.data");
+        Path additionsIndexPath = Files.createTempFile("file-bundle-test", "additions.ffindex");
+        Files.deleteIfExists(additionsDataPath);
+        Files.deleteIfExists(additionsIndexPath);
+
+        try (ConcurrentWriteFileBundle fileBundle = new ConcurrentWriteFileBundle(dataPath, indexPath)) {
+            fileBundle.writeFile("x", Conversions.toByteBuffer("x"));
+            // the channel ends before the announced length, the end marker of the failed write is already written
+            ReadableByteChannel truncated = Channels.newChannel(new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)));
+            assertThrows(EOFException.class, () -> fileBundle.writeFile("failed", truncated, 10));
+        }
+        try (WritableFileBundle writableFileBundle = FileBundleIO.openBundle(additionsDataPath, additionsIndexPath).inWriteOnlyMode()) {
+            writableFileBundle.writeFile("y", Conversions.toByteBuffer("yyy"));
+        }
+
+        FileBundleIO.mergeBundles(dataPath, indexPath, additionsDataPath, additionsIndexPath);
+
+        try (ReadableFileBundle readableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            assertEquals(2, readableFileBundle.fileCount());
+            assertEquals("x", Conversions.toString(readableFileBundle.readFile("x")));
+            assertEquals("yyy", Conversions.toString(readableFileBundle.readFile("y")));
+        }
+    }
+
+    private static String content(int i) {
+        return ("content of " + i + "\n").repeat(i % 50);
+    }
+}
@@ -0,0 +1,64 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.Conversions;
+import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.FilterStatistics;
+import org.rcsb.ffindex.ReadableFileBundle;
+import org.rcsb.ffindex.TestHelper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilteredEntriesTest {
+    @Test
+    void whenFilterBuilt_thenNoFalseNegativesAndFewFalsePositives() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "large.ffindex");
+        int lineCount = 100_000;
+        try (BufferedWriter writer = Files.newBufferedWriter(indexPath)) {
+            for (int i = 0; i < lineCount; i++) {
+                writer.write("dir/" + i + (i % 10 == 0 ? "-ä" : "") + ".cif\t" + i + "\t1\n");
+            }
+        }
+
+        FilterStatistics statistics = new FilterStatistics();
+        FilteredEntries entries = FilteredEntries.of(CompactEntries.of(indexPath), 0.01, statistics);
+        for (int i = 0; i < lineCount; i++) {
+            assertEquals(i, entries.getOffset(entries.getIndex("dir/" + i + (i % 10 == 0 ? "-ä" : "") + ".cif")));
+            assertEquals(-1, entries.getIndex("other/" + i + ".cif"));
+        }
+
+        assertEquals(lineCount, statistics.getPositives());
+        assertEquals(lineCount, statistics.getNegatives() + statistics.getFalsePositives());
+        assertTrue(statistics.getFalsePositiveRate() < 0.02, "Unexpected false positive rate " + statistics.getFalsePositiveRate());
+        assertTrue(entries.filterBitsPerEntry() < 12, "Unexpected filter size " + entries.filterBitsPerEntry());
+    }
+
+    @Test
+    void whenBundleOpenedWithFilter_thenLookupsAreCounted() throws IOException {
+        FilterStatistics statistics = new FilterStatistics();
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(TestHelper.createTempFile("test.data"), TestHelper.createTempFile("test.ffindex")).withFilter(0.001, statistics).inReadOnlyMode()) {
+            assertEquals(4, fileBundle.fileCount());
+            assertEquals("a", Conversions.toString(fileBundle.readFile("a")));
+            assertTrue(fileBundle.containsFile("c"));
+            assertFalse(fileBundle.containsFile("d"));
+            assertThrows(NoSuchFileException.class, () -> fileBundle.readFile("e"));
+        }
+
+        assertEquals(2, statistics.getPositives());
+        assertEquals(2, statistics.getNegatives() + statistics.getFalsePositives());
+    }
+
+    @Test
+    void whenFalsePositiveProbabilityInvalid_thenRejected() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        assertThrows(IllegalArgumentException.class, () -> FileBundleIO.openBundle(dataPath, indexPath).withFilter(0));
+        assertThrows(IllegalArgumentException.class, () -> FileBundleIO.openBundle(dataPath, indexPath).withFilter(1));
+    }
+}
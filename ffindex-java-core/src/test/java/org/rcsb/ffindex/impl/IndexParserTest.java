@@ -0,0 +1,63 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.TestHelper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexParserTest {
+    @Test
+    void whenParsingSmallIndex_thenAllLinesReported() throws IOException {
+        IndexParser.ParsedIndex parsed = IndexParser.parse(TestHelper.createTempFile("not-sorted.ffindex"));
+
+        assertEquals(4, parsed.size());
+        assertEquals("b", parsed.getFilename(0));
+        assertEquals("foo", parsed.getFilename(1));
+        assertEquals(11, parsed.getOffset(1));
+        assertEquals(11, parsed.getLength(1));
+        assertEquals("a", parsed.getFilename(3));
+        assertEquals(0, parsed.getOffset(3));
+        assertEquals(3, parsed.getLength(3));
+    }
+
+    @Test
+    void whenParsingLargeIndex_thenChunksAreJoinedInOrder() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "large.ffindex");
+        int lineCount = 200_000;
+        try (BufferedWriter writer = Files.newBufferedWriter(indexPath)) {
+            for (int i = 0; i < lineCount; i++) {
+                writer.write("dir/" + i + "-ä.cif\t" + (i * 1000L) + "\t" + i + "\n");
+            }
+        }
+        assertTrue(Files.size(indexPath) > 4 << 20, "Test requires several chunks");
+
+        IndexParser.ParsedIndex parsed = IndexParser.parse(indexPath);
+        assertEquals(lineCount, parsed.size());
+        for (int i = 0; i < lineCount; i++) {
+            assertEquals("dir/" + i + "-ä.cif", parsed.getFilename(i));
+            assertEquals(i * 1000L, parsed.getOffset(i));
+            assertEquals(i, parsed.getLength(i));
+        }
+    }
+
+    @Test
+    void whenParsingEmptyIndex_thenNoLinesReported() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "empty.ffindex");
+        assertEquals(0, IndexParser.parse(indexPath).size());
+    }
+
+    @Test
+    void whenParsingMalformedIndex_thenIOExceptionThrown() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "malformed.ffindex");
+        Files.writeString(indexPath, "a\t0\t3\nb\t3\n");
+        assertThrows(IOException.class, () -> IndexParser.parse(indexPath));
+
+        Files.writeString(indexPath, "a\t0\t99999999999\n");
+        assertThrows(IOException.class, () -> IndexParser.parse(indexPath));
+    }
+}
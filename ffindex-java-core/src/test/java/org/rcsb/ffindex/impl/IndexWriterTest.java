@@ -0,0 +1,65 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexWriterTest {
+    @Test
+    void whenAppendingEntries_thenLinesMatchTextFormat() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "writer.ffindex");
+        String longName = "n".repeat(IndexWriter.BUFFER_SIZE + 1);
+        AtomicInteger dataFlushes = new AtomicInteger();
+
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+            IndexWriter indexWriter = new IndexWriter(channel, dataFlushes::incrementAndGet);
+            indexWriter.append("a", 0, 3);
+            indexWriter.append("ä/b", 1234567890123L, 4294967295L);
+            assertEquals(0, Files.size(indexPath));
+            assertEquals(0, dataFlushes.get());
+
+            indexWriter.append(longName, 10, 1);
+            indexWriter.flush();
+            assertTrue(dataFlushes.get() > 0);
+        }
+
+        List<String> lines = Files.readAllLines(indexPath, StandardCharsets.UTF_8);
+        assertEquals(List.of("a\t0\t3", "ä/b\t1234567890123\t4294967295", longName + "\t10\t1"), lines);
+    }
+
+    @Test
+    void whenManyEntriesArePending_thenBatchIsWritten() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "batch.ffindex");
+
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+            IndexWriter indexWriter = new IndexWriter(channel, null);
+            for (int i = 0; i < IndexWriter.MAX_PENDING_ENTRIES; i++) {
+                indexWriter.append("f", i, 2);
+            }
+            assertEquals(IndexWriter.MAX_PENDING_ENTRIES, Files.readAllLines(indexPath).size());
+        }
+    }
+
+    @Test
+    void whenLineExceedsBuffer_thenItIsWrittenWhole() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "long.ffindex");
+        String longName = "n".repeat(IndexWriter.BUFFER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+            IndexWriter indexWriter = new IndexWriter(channel, null);
+            indexWriter.append("a", 0, 3);
+            indexWriter.append(longName, 3, 1);
+            // pending entries precede the line, which isn't split between file and buffer
+            assertEquals("a\t0\t3\n" + longName + "\t3\t1\n", Files.readString(indexPath));
+        }
+    }
+}
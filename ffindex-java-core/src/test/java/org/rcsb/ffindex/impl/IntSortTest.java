@@ -0,0 +1,39 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntSortTest {
+    @Test
+    void whenSortingByCustomOrder_thenResultMatchesArraysSort() {
+        Random random = new Random(42);
+        for (int length : new int[] { 0, 1, 2, 15, 16, 17, 100, 1000 }) {
+            int[] values = random.ints(length, -500, 500).toArray();
+            int[] expected = Arrays.stream(values).boxed()
+                    .sorted((a, b) -> Integer.compare(b, a))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            IntSort.sort(values, (a, b) -> Integer.compare(b, a));
+            assertArrayEquals(expected, values, "length " + length);
+        }
+    }
+
+    @Test
+    void whenKeysAreEqual_thenOrderIsKept() {
+        int[] keys = new Random(7).ints(200, 0, 5).toArray();
+        int[] indices = new int[keys.length];
+        Arrays.setAll(indices, i -> i);
+
+        IntSort.sort(indices, (a, b) -> Integer.compare(keys[a], keys[b]));
+        for (int i = 1; i < indices.length; i++) {
+            int previous = indices[i - 1];
+            int current = indices[i];
+            assertTrue(keys[previous] < keys[current] || (keys[previous] == keys[current] && previous < current));
+        }
+    }
+}
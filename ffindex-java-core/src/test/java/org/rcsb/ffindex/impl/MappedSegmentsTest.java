@@ -0,0 +1,79 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.Conversions;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSegmentsTest {
+    @Test
+    void whenRegionCrossesSegmentBoundary_thenContentIsComplete() throws IOException {
+        Path path = Files.createTempFile("file-bundle-test", "segments.data");
+        Files.writeString(path, "0123456789abcdefghij");
+
+        try (FileChannel channel = new RandomAccessFile(path.toFile(), "r").getChannel()) {
+            // 8 bytes per segment
+            MappedSegments segments = new MappedSegments(channel, 3);
+            assertEquals(3, segments.segmentCount());
+            assertEquals("0123", Conversions.toString(segments.slice(0, 4)));
+            assertEquals("89abcdef", Conversions.toString(segments.slice(8, 8)));
+            assertEquals("6789ab", Conversions.toString(segments.slice(6, 6)));
+            assertEquals("0123456789abcdefghij", Conversions.toString(segments.slice(0, 20)));
+            assertEquals("", Conversions.toString(segments.slice(20, 0)));
+
+            ByteBuffer slice = segments.slice(17, 3);
+            assertEquals(0, slice.position());
+            assertTrue(slice.isReadOnly());
+            assertEquals('h', slice.get(0));
+        }
+    }
+
+    @Test
+    void whenFileGrows_thenSegmentsAreExtended() throws IOException {
+        Path path = Files.createTempFile("file-bundle-test", "segments.data");
+        Files.writeString(path, "0123");
+
+        try (FileChannel channel = new RandomAccessFile(path.toFile(), "rw").getChannel()) {
+            MappedSegments segments = new MappedSegments(channel, 3);
+            assertEquals(1, segments.segmentCount());
+
+            // less than a segment is read without mapping
+            channel.write(Conversions.toByteBuffer("456"), 4);
+            assertEquals("456", Conversions.toString(segments.slice(4, 3)));
+            assertFalse(segments.copy(4, 3, ByteBuffer.allocate(3)));
+            assertEquals(1, segments.segmentCount());
+
+            channel.write(Conversions.toByteBuffer("789abcdefghij"), 7);
+            assertEquals("4567", Conversions.toString(segments.slice(4, 4)));
+            assertEquals("hij", Conversions.toString(segments.slice(17, 3)));
+            assertEquals(3, segments.segmentCount());
+        }
+    }
+
+    @Test
+    void whenCopyingAcrossSegments_thenContentIsComplete() throws IOException {
+        Path path = Files.createTempFile("file-bundle-test", "segments.data");
+        Files.writeString(path, "0123456789abcdefghijklmnopqrstuv");
+
+        try (FileChannel channel = new RandomAccessFile(path.toFile(), "r").getChannel()) {
+            MappedSegments segments = new MappedSegments(channel, 3);
+            for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+                ByteBuffer target = ByteBuffer.allocate(32).order(order);
+                target.put((byte) '_');
+                assertTrue(segments.copy(5, 21, target));
+                assertEquals(22, target.position());
+                target.flip();
+                assertEquals("_56789abcdefghijklmnop", Conversions.toString(target), order.toString());
+            }
+            assertFalse(segments.copy(30, 3, ByteBuffer.allocate(3)));
+        }
+    }
+}
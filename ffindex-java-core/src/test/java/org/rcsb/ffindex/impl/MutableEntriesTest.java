@@ -0,0 +1,66 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.TestHelper;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MutableEntriesTest {
+    @Test
+    void whenAddingManyFiles_thenAllResolved() throws IOException {
+        MutableEntries entries = new MutableEntries();
+        int count = 200_000;
+        for (int i = 0; i < count; i++) {
+            entries.addFile((i % 2 == 0 ? "file-" : "fïle-") + i, i * 10L, i);
+        }
+
+        assertEquals(count, entries.size());
+        assertEquals(count, entries.filenames().count());
+        for (int i = 0; i < count; i++) {
+            int index = entries.getIndex((i % 2 == 0 ? "file-" : "fïle-") + i);
+            assertEquals(i * 10L, entries.getOffset(index));
+            assertEquals(i, entries.getLength(index));
+        }
+        assertEquals(-1, entries.getIndex("file-1"));
+        assertEquals(-1, entries.getIndex("fïle-0"));
+    }
+
+    @Test
+    void whenAddingDuplicate_thenFileAlreadyExistsExceptionThrown() throws IOException {
+        MutableEntries entries = MutableEntries.of(TestHelper.createTempFile("test.ffindex"));
+        assertEquals(4, entries.size());
+        assertThrows(FileAlreadyExistsException.class, () -> entries.addFile("foo", 100, 1));
+
+        entries.addFile("ä", 22, 2);
+        assertThrows(FileAlreadyExistsException.class, () -> entries.addFile("ä", 100, 1));
+        assertEquals(5, entries.size());
+    }
+
+    @Test
+    void whenIndexContainsDuplicates_thenLastOccurrenceWins() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "duplicates.ffindex");
+        Files.write(indexPath, List.of("a\t0\t3", "b\t3\t4", "a\t7\t4"));
+
+        MutableEntries entries = MutableEntries.of(indexPath);
+        assertEquals(2, entries.size());
+        assertEquals(7, entries.getOffset(entries.getIndex("a")));
+    }
+
+    @Test
+    void whenAddingFileAfterListing_thenListingIsUpdated() throws IOException {
+        MutableEntries entries = new MutableEntries();
+        entries.addFile("dir/b", 0, 3);
+        entries.addFile("other", 3, 3);
+        assertEquals(List.of("dir/b"), entries.filenames("dir/").collect(Collectors.toList()));
+
+        entries.addFile("dir/a", 6, 3);
+        assertEquals(List.of("dir/a", "dir/b"), entries.filenames("dir/").collect(Collectors.toList()));
+    }
+}
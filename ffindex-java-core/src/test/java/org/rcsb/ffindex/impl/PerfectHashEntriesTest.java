@@ -0,0 +1,100 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.Conversions;
+import org.rcsb.ffindex.FileBundle;
+import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.IndexType;
+import org.rcsb.ffindex.ReadableFileBundle;
+import org.rcsb.ffindex.TestHelper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerfectHashEntriesTest {
+    @Test
+    void whenPerfectHashBuilt_thenAllFilesResolved() throws IOException {
+        PerfectHashEntries entries = PerfectHashEntries.of(TestHelper.createTempFile("test.ffindex"));
+
+        assertEquals(4, entries.size());
+        assertEquals(Set.of("a", "b", "c", "foo"), entries.filenames().collect(Collectors.toSet()));
+        assertEquals(11, entries.getOffset(entries.getIndex("foo")));
+        assertEquals(11, entries.getLength(entries.getIndex("foo")));
+        assertEquals("c", entries.getFilename(entries.getIndex("c")));
+        assertEquals(-1, entries.getIndex("d"));
+        assertEquals(-1, entries.getIndex("ä"));
+    }
+
+    @Test
+    void whenManyFiles_thenEachResolvedToDistinctEntryWithFewBits() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "large.ffindex");
+        int lineCount = 100_000;
+        try (BufferedWriter writer = Files.newBufferedWriter(indexPath)) {
+            for (int i = 0; i < lineCount; i++) {
+                writer.write("dir/" + i + (i % 10 == 0 ? "-ä" : "") + ".cif\t" + i + "\t1\n");
+            }
+            // later occurrences shadow earlier ones
+            writer.write("dir/0-ä.cif\t" + lineCount + "\t2\n");
+        }
+
+        PerfectHashEntries entries = PerfectHashEntries.of(indexPath);
+        assertEquals(lineCount, entries.size());
+        for (int i = 1; i < lineCount; i++) {
+            int index = entries.getIndex("dir/" + i + (i % 10 == 0 ? "-ä" : "") + ".cif");
+            assertEquals(i, entries.getOffset(index));
+            assertEquals(-1, entries.getIndex("other/" + i + ".cif"));
+        }
+        assertEquals(lineCount, entries.getOffset(entries.getIndex("dir/0-ä.cif")));
+        assertTrue(entries.bitsPerEntry() < 5, "Expected a few bits per entry, got " + entries.bitsPerEntry());
+    }
+
+    @Test
+    void whenPerfectHashWritten_thenSidecarIsUsedUntilIndexChanges() throws IOException {
+        Path dataPath = TestHelper.createTempFile("part1.data");
+        Path indexPath = TestHelper.createTempFile("part1.ffindex");
+        Path perfectHashPath = indexPath.resolveSibling(indexPath.getFileName() + FileBundle.PERFECT_HASH_EXT);
+        FileBundleIO.writePerfectHash(indexPath);
+
+        BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        assertNotNull(PerfectHashEntries.read(perfectHashPath, attributes.size(), attributes.lastModifiedTime().toMillis()));
+        assertNull(PerfectHashEntries.read(perfectHashPath, attributes.size() + 1, attributes.lastModifiedTime().toMillis()), "Stale sidecar should be rejected");
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(IndexType.PERFECT_HASH).inReadOnlyMode()) {
+            assertEquals(2, fileBundle.fileCount());
+            assertEquals("bb", Conversions.toString(fileBundle.readFile("b")));
+        }
+
+        Files.write(dataPath, TestHelper.getBytes("part2.data"), StandardOpenOption.APPEND);
+        Files.writeString(indexPath, "c\t7\t4\n", StandardOpenOption.APPEND);
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(IndexType.PERFECT_HASH).inReadOnlyMode()) {
+            assertEquals(3, fileBundle.fileCount());
+            assertEquals("cc", Conversions.toString(fileBundle.readFile("c")));
+        }
+    }
+
+    @Test
+    void whenSidecarIsCorrupt_thenItIsIgnored() throws IOException {
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        Path perfectHashPath = indexPath.resolveSibling(indexPath.getFileName() + FileBundle.PERFECT_HASH_EXT);
+        FileBundleIO.writePerfectHash(indexPath);
+
+        byte[] bytes = Files.readAllBytes(perfectHashPath);
+        bytes[bytes.length - 5]++;
+        Files.write(perfectHashPath, bytes);
+
+        BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        assertNull(PerfectHashEntries.read(perfectHashPath, attributes.size(), attributes.lastModifiedTime().toMillis()));
+        PerfectHashEntries entries = PerfectHashEntries.of(indexPath, perfectHashPath);
+        assertEquals(4, entries.size());
+        assertEquals(0, entries.getOffset(entries.getIndex("a")));
+    }
+}
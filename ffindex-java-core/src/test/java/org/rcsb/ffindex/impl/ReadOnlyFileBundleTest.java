@@ -2,14 +2,41 @@ package org.rcsb.ffindex.impl;
 
 import org.junit.jupiter.api.Test;
 import org.rcsb.ffindex.Conversions;
+import org.rcsb.ffindex.FileBundle;
 import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.FileEntry;
+import org.rcsb.ffindex.IndexType;
+import org.rcsb.ffindex.Prefetch;
+import org.rcsb.ffindex.ReadStrategy;
 import org.rcsb.ffindex.ReadableFileBundle;
 import org.rcsb.ffindex.TestHelper;
+import org.rcsb.ffindex.WritableFileBundle;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,6 +54,294 @@ class ReadOnlyFileBundleTest {
         }
     }
 
+    @Test
+    void whenReadingWithAnyStrategy_thenContentMatchesExpectation() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+
+        for (ReadStrategy readStrategy : ReadStrategy.values()) {
+            try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withReadStrategy(readStrategy).inReadOnlyMode()) {
+                for (int i = 0; i < 2; i++) {
+                    ByteBuffer a = fileBundle.readFile("a");
+                    assertEquals("a", Conversions.toString(a), readStrategy.name());
+                    fileBundle.releaseBuffer(a);
+                    ByteBuffer foo = fileBundle.readFile("foo");
+                    assertEquals("fooo\nfooo", Conversions.toString(foo), readStrategy.name());
+                    fileBundle.releaseBuffer(foo);
+                }
+
+                ByteBuffer target = ByteBuffer.allocateDirect(16);
+                assertEquals(9, fileBundle.fileLength("foo"), readStrategy.name());
+                assertEquals(9, fileBundle.readFile("foo", target), readStrategy.name());
+                assertEquals(2, fileBundle.readFile("b", target), readStrategy.name());
+                assertEquals(11, target.position(), readStrategy.name());
+                assertEquals("fooo\nfooobb", Conversions.toString(target.flip()), readStrategy.name());
+                assertThrows(BufferOverflowException.class, () -> fileBundle.readFile("foo", ByteBuffer.allocate(8)), readStrategy.name());
+                assertThrows(NoSuchFileException.class, () -> fileBundle.fileLength("d"), readStrategy.name());
+            }
+        }
+    }
+
+    @Test
+    void whenReadingRanges_thenOnlyRequestedBytesAreReturned() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+
+        for (ReadStrategy readStrategy : ReadStrategy.values()) {
+            try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withReadStrategy(readStrategy).inReadOnlyMode()) {
+                assertEquals("oo\nf", Conversions.toString(fileBundle.readFileRange("foo", 2, 4)), readStrategy.name());
+                // clipped at the end of the file
+                assertEquals("oo", Conversions.toString(fileBundle.readFileRange("foo", 7, 100)), readStrategy.name());
+                assertEquals(0, fileBundle.readFileRange("foo", 20, 5).remaining(), readStrategy.name());
+                assertThrows(IllegalArgumentException.class, () -> fileBundle.readFileRange("foo", -1, 5), readStrategy.name());
+                assertThrows(NoSuchFileException.class, () -> fileBundle.readFileRange("d", 0, 5), readStrategy.name());
+                assertEquals(9, fileBundle.fileLongLength("foo"), readStrategy.name());
+            }
+        }
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            try (SeekableByteChannel channel = fileBundle.newByteChannel("foo")) {
+                assertEquals(9, channel.size());
+                ByteBuffer buffer = ByteBuffer.allocate(16);
+                channel.position(5);
+                assertEquals(4, channel.read(buffer));
+                assertEquals("fooo", Conversions.toString(buffer.flip()));
+                assertEquals(-1, channel.read(buffer.clear()));
+                assertThrows(NonWritableChannelException.class, () -> channel.write(buffer));
+            }
+            try (InputStream inputStream = fileBundle.newInputStream("foo")) {
+                assertEquals("fooo\nfooo", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void whenFileExceedsBuffer_thenItIsReadByRange() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "huge.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "huge.ffindex");
+        long length = 3L << 30;
+        // sparse, doesn't occupy disk space
+        try (RandomAccessFile dataFile = new RandomAccessFile(dataPath.toFile(), "rw")) {
+            dataFile.setLength(length + FileBundle.FILE_END_LENGTH);
+            dataFile.seek(length - 4);
+            dataFile.write("tail".getBytes(StandardCharsets.UTF_8));
+        }
+        Files.writeString(indexPath, "huge\t0\t" + (length + FileBundle.FILE_END_LENGTH) + "\n");
+
+        for (IndexType indexType : IndexType.values()) {
+            try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(indexType).inReadOnlyMode()) {
+                assertEquals(length, fileBundle.fileLongLength("huge"), indexType.name());
+                assertThrows(IOException.class, () -> fileBundle.fileLength("huge"), indexType.name());
+                assertThrows(IOException.class, () -> fileBundle.readFile("huge"), indexType.name());
+                assertEquals("tail", Conversions.toString(fileBundle.readFileRange("huge", length - 4, 100)), indexType.name());
+                try (SeekableByteChannel channel = fileBundle.newByteChannel("huge")) {
+                    assertEquals(length, channel.size(), indexType.name());
+                }
+            }
+        }
+    }
+
+    @Test
+    void whenReadingBatch_thenFilesAreReadInOffsetOrder() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "batch.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "batch.ffindex");
+        Files.delete(dataPath);
+        Files.delete(indexPath);
+        try (WritableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inWriteOnlyMode()) {
+            fileBundle.writeFile("a", Conversions.toByteBuffer("a"));
+            fileBundle.writeFile("b", Conversions.toByteBuffer("bb"));
+            // exceeds the gap that is read to merge neighboring files
+            fileBundle.writeFile("large", ByteBuffer.allocate(AbstractFileBundle.MAX_GAP + 1));
+            fileBundle.writeFile("c", Conversions.toByteBuffer("ccc"));
+        }
+
+        for (ReadStrategy readStrategy : ReadStrategy.values()) {
+            try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withReadStrategy(readStrategy).inReadOnlyMode()) {
+                Map<String, ByteBuffer> contents = fileBundle.readFiles(List.of("c", "a", "b", "c"));
+                assertEquals(List.of("c", "a", "b"), List.copyOf(contents.keySet()), readStrategy.name());
+                assertEquals("a", Conversions.toString(contents.get("a")), readStrategy.name());
+                assertEquals("bb", Conversions.toString(contents.get("b")), readStrategy.name());
+                assertEquals("ccc", Conversions.toString(contents.get("c")), readStrategy.name());
+                assertTrue(contents.get("c").isReadOnly(), readStrategy.name());
+
+                List<String> order = new ArrayList<>();
+                fileBundle.readFiles(List.of("c", "large", "a", "c"), (filename, content) -> order.add(filename));
+                assertEquals(List.of("a", "large", "c"), order, readStrategy.name());
+
+                assertThrows(NoSuchFileException.class, () -> fileBundle.readFiles(List.of("a", "d")), readStrategy.name());
+            }
+        }
+    }
+
+    @Test
+    void whenScanningAllFiles_thenFilesAreVisitedInOffsetOrder() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "scan.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "scan.ffindex");
+        Files.delete(dataPath);
+        Files.delete(indexPath);
+        List<String> expected = new ArrayList<>();
+        try (WritableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inWriteOnlyMode()) {
+            for (int i = 0; i < 100; i++) {
+                fileBundle.writeFile("file" + i, Conversions.toByteBuffer("content" + i));
+                expected.add("file" + i);
+            }
+            // larger than a chunk of the scan
+            fileBundle.writeFile("large", ByteBuffer.allocate(AbstractFileBundle.SCAN_CHUNK + 1));
+            fileBundle.writeFile("last", Conversions.toByteBuffer("last"));
+            expected.add("large");
+            expected.add("last");
+        }
+
+        for (ReadStrategy readStrategy : ReadStrategy.values()) {
+            try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withReadStrategy(readStrategy).inReadOnlyMode()) {
+                List<String> order = new ArrayList<>();
+                fileBundle.forEachFile((filename, content) -> {
+                    order.add(filename);
+                    assertTrue(content.isReadOnly(), readStrategy.name());
+                    if (filename.startsWith("file")) {
+                        assertEquals("content" + filename.substring(4), Conversions.toString(content), readStrategy.name());
+                    }
+                });
+                assertEquals(expected, order, readStrategy.name());
+            }
+        }
+
+        // an executor that never runs the read-ahead leaves all reads to the scanning thread
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withReadExecutor(runnable -> {}, 1).inReadOnlyMode()) {
+            List<String> order = new ArrayList<>();
+            fileBundle.forEachFile((filename, content) -> order.add(filename + ":" + content.remaining()));
+            assertEquals(expected.size(), order.size());
+            assertEquals("large:" + (AbstractFileBundle.SCAN_CHUNK + 1), order.get(100));
+            assertEquals("last:4", order.get(101));
+        }
+    }
+
+    @Test
+    void whenStreamingEntries_thenSplitsCoverContiguousOffsetRanges() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "entries.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "entries.ffindex");
+        Files.delete(dataPath);
+        Files.delete(indexPath);
+        List<String> expected = new ArrayList<>();
+        try (WritableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inWriteOnlyMode()) {
+            for (int i = 0; i < 1000; i++) {
+                // spans several chunks of the stream
+                fileBundle.writeFile("file" + i, ByteBuffer.wrap(("content" + i + "\n").repeat(500).getBytes(StandardCharsets.UTF_8)));
+                expected.add("file" + i);
+            }
+        }
+
+        for (ReadStrategy readStrategy : ReadStrategy.values()) {
+            try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withReadStrategy(readStrategy).inReadOnlyMode()) {
+                List<FileEntry> entries = fileBundle.entries().collect(Collectors.toList());
+                assertEquals(expected, entries.stream().map(FileEntry::getFilename).collect(Collectors.toList()), readStrategy.name());
+                for (FileEntry entry : entries) {
+                    String content = Conversions.toString(entry.getContent());
+                    assertEquals(("content" + entry.getFilename().substring(4) + "\n").repeat(500), content, readStrategy.name());
+                    assertEquals(content.length(), entry.getLength(), readStrategy.name());
+                }
+
+                List<String> parallel = fileBundle.entries()
+                        .parallel()
+                        .map(entry -> entry.getFilename() + ":" + Conversions.toString(entry.getContent()).hashCode())
+                        .collect(Collectors.toList());
+                assertEquals(entries.stream().map(entry -> entry.getFilename() + ":" + Conversions.toString(entry.getContent()).hashCode()).collect(Collectors.toList()), parallel, readStrategy.name());
+
+                // splits hand out a prefix of the offset range, which keeps reads of each split sequential
+                Spliterator<FileEntry> suffix = fileBundle.entries().spliterator();
+                Spliterator<FileEntry> prefix = suffix.trySplit();
+                assertNotNull(prefix, readStrategy.name());
+                assertEquals(1000, prefix.estimateSize() + suffix.estimateSize(), readStrategy.name());
+                long[] last = { -1 };
+                prefix.forEachRemaining(entry -> last[0] = entry.getOffset());
+                suffix.tryAdvance(entry -> assertTrue(entry.getOffset() > last[0], readStrategy.name()));
+            }
+        }
+    }
+
+    @Test
+    void whenPrefetching_thenProgressIsReported() throws Exception {
+        Path dataPath = Files.createTempFile("file-bundle-test", "prefetch.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "prefetch.ffindex");
+        Files.delete(dataPath);
+        Files.delete(indexPath);
+        try (WritableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inWriteOnlyMode()) {
+            fileBundle.writeFile("dir/a", Conversions.toByteBuffer("a"));
+            fileBundle.writeFile("dir/b", Conversions.toByteBuffer("bb"));
+            fileBundle.writeFile("large", ByteBuffer.allocate(3 * AbstractFileBundle.PREFETCH_STEP));
+        }
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            Prefetch prefix = fileBundle.prefetch("dir/", Prefetch.UNLIMITED);
+            prefix.getCompletion().get(10, TimeUnit.SECONDS);
+            // both files with their end markers
+            assertEquals(3 + 2 * FileBundle.FILE_END_LENGTH, prefix.getTotalBytes());
+            assertEquals(prefix.getTotalBytes(), prefix.getPrefetchedBytes());
+            assertEquals(1, prefix.getProgress());
+
+            // 10 MB/s delays each step after the first by 100 ms
+            long start = System.nanoTime();
+            Prefetch all = fileBundle.prefetchAll(10 * AbstractFileBundle.PREFETCH_STEP);
+            all.getCompletion().get(10, TimeUnit.SECONDS);
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+            assertEquals(Files.size(dataPath), all.getPrefetchedBytes());
+
+            assertThrows(NoSuchFileException.class, () -> fileBundle.prefetch(List.of("dir/a", "d"), Prefetch.UNLIMITED));
+        }
+
+        // an executor that never runs tasks
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withReadExecutor(runnable -> {}, 1).inReadOnlyMode()) {
+            Prefetch prefetch = fileBundle.prefetch(List.of("large"), Prefetch.UNLIMITED);
+            prefetch.cancel();
+            assertTrue(prefetch.getCompletion().isCancelled());
+            assertEquals(0, prefetch.getPrefetchedBytes());
+        }
+    }
+
+    @Test
+    void whenReadingAsynchronously_thenFuturesCompleteWithContent() throws Exception {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withReadExecutor(executorService, 1).inReadOnlyMode()) {
+            CompletableFuture<ByteBuffer> a = fileBundle.readFileAsync("a");
+            CompletableFuture<ByteBuffer> foo = fileBundle.readFileAsync("foo");
+            CompletableFuture<Map<String, ByteBuffer>> batch = fileBundle.readFilesAsync(List.of("c", "b"));
+            CompletableFuture<ByteBuffer> missing = fileBundle.readFileAsync("d");
+
+            assertEquals("a", Conversions.toString(a.get(10, TimeUnit.SECONDS)));
+            assertEquals("fooo\nfooo", Conversions.toString(foo.get(10, TimeUnit.SECONDS)));
+            assertEquals(List.of("c", "b"), List.copyOf(batch.get(10, TimeUnit.SECONDS).keySet()));
+            assertEquals("bb", Conversions.toString(batch.get().get("b")));
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> missing.get(10, TimeUnit.SECONDS));
+            assertTrue(exception.getCause() instanceof NoSuchFileException);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    void whenTransferringFile_thenChannelReceivesContent() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+        Path outPath = Files.createTempFile("file-bundle-test", "transfer.out");
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode();
+             FileChannel out = FileChannel.open(outPath, StandardOpenOption.WRITE)) {
+            assertEquals(9, fileBundle.transferFile("foo", out));
+            assertEquals(2, fileBundle.transferFile("b", out));
+            assertThrows(NoSuchFileException.class, () -> fileBundle.transferFile("d", out));
+        }
+        assertEquals("fooo\nfooobb", Files.readString(outPath));
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            assertEquals(1, fileBundle.transferFile("a", Channels.newChannel(stream)));
+        }
+        assertEquals("a", stream.toString(StandardCharsets.UTF_8));
+    }
+
     @Test
     void whenReadingEmptyFile_thenEmptyStatusReported() throws IOException {
         Path dataPath = Files.createTempFile("file-bundle-test", "nope.data");
@@ -50,4 +365,29 @@ class ReadOnlyFileBundleTest {
             assertThrows(NoSuchFileException.class, () -> fileBundle.readFile("a"));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenListingPrefix_thenMatchesReturnedInOrderForAllIndexTypes() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "directories.ffindex");
+        Files.writeString(indexPath, "1abc/b.cif\t0\t3\n" +
+                "1abc/a.cif\t0\t3\n" +
+                "1abc\t0\t3\n" +
+                "1abd/a.cif\t0\t3\n" +
+                "1ab/x.cif\t0\t3\n" +
+                "1abc/sub/ä.cif\t0\t3\n" +
+                "1abc/a.cif\t3\t4\n");
+        FileBundleIO.sortIndexFile(indexPath);
+
+        for (IndexType indexType : IndexType.values()) {
+            try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(indexType).inReadOnlyMode()) {
+                assertEquals(List.of("1abc/a.cif", "1abc/b.cif", "1abc/sub/ä.cif"), fileBundle.listFilenames("1abc/"), indexType.name());
+                assertEquals(List.of("1abc/sub/ä.cif"), fileBundle.listFilenames("1abc/sub/"), indexType.name());
+                assertEquals(List.of("1ab/x.cif", "1abc", "1abc/a.cif", "1abc/b.cif", "1abc/sub/ä.cif", "1abd/a.cif"), fileBundle.listFilenames("1ab"), indexType.name());
+                assertEquals(6, fileBundle.filenames("").count(), indexType.name());
+                assertEquals(List.of(), fileBundle.listFilenames("1abe"), indexType.name());
+                assertEquals(List.of(), fileBundle.listFilenames("2"), indexType.name());
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 import org.rcsb.ffindex.AppendableFileBundle;
 import org.rcsb.ffindex.Conversions;
 import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.ReadStrategy;
 import org.rcsb.ffindex.TestHelper;
 
 import java.io.IOException;
@@ -79,4 +80,17 @@ class ReadWriteFileBundleTest {
             assertArrayEquals(TestHelper.getBytes("data/b"), Conversions.toByteArray(fileBundle.readFile("b")));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenReadingFromMappedSegments_thenAppendedContentIsVisible() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = TestHelper.createTempFile("test.ffindex");
+
+        try (AppendableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withReadStrategy(ReadStrategy.MAPPED_SEGMENTS).inReadWriteMode()) {
+            assertEquals("fooo\nfooo", Conversions.toString(fileBundle.readFile("foo")));
+            fileBundle.writeFile("d", Conversions.toByteBuffer("ddd"));
+            assertEquals("ddd", Conversions.toString(fileBundle.readFile("d")));
+            assertEquals("bb", Conversions.toString(fileBundle.readFile("b")));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.Conversions;
+import org.rcsb.ffindex.FileBundle;
+import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.ReadableFileBundle;
+import org.rcsb.ffindex.WritableFileBundle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedWriteFileBundleTest {
+    @Test
+    void whenWritingFromManyThreads_thenShardsAreMergedIntoOneBundle() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "sharded.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "sharded.ffindex");
+        Files.deleteIfExists(dataPath);
+        Files.deleteIfExists(indexPath);
+
+        int count = 2000;
+        try (WritableFileBundle writableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inShardedWriteMode()) {
+            IntStream.range(0, count).parallel().forEach(i -> {
+                try {
+                    writableFileBundle.writeFile("file" + i, Conversions.toByteBuffer(content(i)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        // no shards remain
+        assertFalse(Files.exists(dataPath.resolveSibling(dataPath.getFileName() + ".0" + FileBundle.TMP_EXT)));
+        assertFalse(Files.exists(indexPath.resolveSibling(indexPath.getFileName() + ".0" + FileBundle.TMP_EXT)));
+        try (ReadableFileBundle readableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            assertEquals(count, readableFileBundle.fileCount());
+            for (int i = 0; i < count; i++) {
+                assertEquals(content(i), Conversions.toString(readableFileBundle.readFile("file" + i)));
+            }
+        }
+    }
+
+    @Test
+    void whenWritingAfterClose_thenIllegalStateExceptionThrown() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "sharded.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "sharded.ffindex");
+        Files.deleteIfExists(dataPath);
+        Files.deleteIfExists(indexPath);
+
+        WritableFileBundle writableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inShardedWriteMode();
+        writableFileBundle.writeFile("a", Conversions.toByteBuffer("a"));
+        writableFileBundle.close();
+        // closing again doesn't merge again
+        writableFileBundle.close();
+
+        // this thread still holds its shard
+        ByteBuffer byteBuffer = Conversions.toByteBuffer("b");
+        assertThrows(IllegalStateException.class, () -> writableFileBundle.writeFile("b", byteBuffer));
+        try (ReadableFileBundle readableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            assertEquals(1, readableFileBundle.fileCount());
+            assertEquals("a", Conversions.toString(readableFileBundle.readFile("a")));
+        }
+    }
+
+    @Test
+    void whenMergingFails_thenShardsAreKept() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "sharded.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "sharded.ffindex");
+        Files.deleteIfExists(dataPath);
+        Files.deleteIfExists(indexPath);
+        Path shardDataPath = dataPath.resolveSibling(dataPath.getFileName() + ".0" + FileBundle.TMP_EXT);
+        Path shardIndexPath = indexPath.resolveSibling(indexPath.getFileName() + ".0" + FileBundle.TMP_EXT);
+
+        WritableFileBundle writableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inShardedWriteMode();
+        writableFileBundle.writeFile("a", Conversions.toByteBuffer("a"));
+        // the shard index can't be read back when merging
+        Files.delete(shardIndexPath);
+
+        IOException e = assertThrows(IOException.class, writableFileBundle::close);
+        assertTrue(e.getMessage().contains(shardDataPath.toString()), "Shards should be named");
+        assertArrayEquals(new byte[] { 'a', '\n', 0 }, Files.readAllBytes(shardDataPath), "Shard data should be kept");
+        Files.delete(shardDataPath);
+    }
+
+    @Test
+    void whenWritingDuplicatesFromOtherThread_thenIllegalStateExceptionThrown() throws Exception {
+        Path dataPath = Files.createTempFile("file-bundle-test", "sharded.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "sharded.ffindex");
+        Files.deleteIfExists(dataPath);
+        Files.deleteIfExists(indexPath);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (WritableFileBundle writableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inShardedWriteMode(true)) {
+            writableFileBundle.writeFile("a", Conversions.toByteBuffer("OK"));
+            Future<?> duplicate = executor.submit(() -> {
+                ByteBuffer byteBuffer = Conversions.toByteBuffer("reject");
+                assertThrows(IllegalStateException.class, () -> writableFileBundle.writeFile("a", byteBuffer));
+                writableFileBundle.writeFile("b", Conversions.toByteBuffer("other"));
+                return null;
+            });
+            duplicate.get();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        try (ReadableFileBundle readableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+            assertEquals(2, readableFileBundle.fileCount());
+            assertEquals("OK", Conversions.toString(readableFileBundle.readFile("a")));
+            assertEquals("other", Conversions.toString(readableFileBundle.readFile("b")));
+        }
+    }
+
+    private static String content(int i) {
+        return ("content of " + i + "\n").repeat(i % 50);
+    }
+}
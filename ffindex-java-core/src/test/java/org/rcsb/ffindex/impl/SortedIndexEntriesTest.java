@@ -0,0 +1,81 @@
+package org.rcsb.ffindex.impl;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.ffindex.Conversions;
+import org.rcsb.ffindex.FileBundleIO;
+import org.rcsb.ffindex.IndexType;
+import org.rcsb.ffindex.ReadableFileBundle;
+import org.rcsb.ffindex.TestHelper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedIndexEntriesTest {
+    @Test
+    void whenSearchingSortedIndex_thenAllEntriesResolved() throws IOException {
+        Path indexPath = TestHelper.createTempFile("not-sorted.ffindex");
+        FileBundleIO.sortIndexFile(indexPath);
+
+        SortedIndexEntries entries = SortedIndexEntries.of(indexPath);
+        assertEquals(4, entries.size());
+        assertEquals(List.of("a", "b", "c", "foo"), entries.filenames().collect(Collectors.toList()));
+        assertEquals(11, entries.getOffset(entries.getIndex("foo")));
+        assertEquals(11, entries.getLength(entries.getIndex("foo")));
+        assertEquals(3, entries.getOffset(entries.getIndex("b")));
+        assertEquals(4, entries.getLength(entries.getIndex("b")));
+        for (String absent : List.of("", "0", "aa", "d", "fo", "fooo", "z")) {
+            assertEquals(-1, entries.getIndex(absent), absent);
+        }
+    }
+
+    @Test
+    void whenLastLineIsNotTerminated_thenEntryResolved() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "unterminated.ffindex");
+        Files.writeString(indexPath, "a\t0\t3\nb\t3\t4");
+
+        SortedIndexEntries entries = SortedIndexEntries.of(indexPath);
+        assertEquals(2, entries.size());
+        assertEquals(3, entries.getOffset(entries.getIndex("b")));
+        assertEquals(4, entries.getLength(entries.getIndex("b")));
+    }
+
+    @Test
+    void whenFilenameIsDuplicated_thenLastLineWinsAsInParsedIndex() throws IOException {
+        Path indexPath = Files.createTempFile("file-bundle-test", "duplicates.ffindex");
+        Files.writeString(indexPath, "a\t0\t2\nb\t2\t2\nb\t4\t2\nb\t6\t2\nbb\t8\t2\nc\t10\t2\n");
+
+        SortedIndexEntries entries = SortedIndexEntries.of(indexPath);
+        ImmutableEntries parsed = ImmutableEntries.of(indexPath);
+        assertEquals(parsed.size(), entries.size());
+        assertEquals(4, entries.size());
+        assertEquals(List.of("a", "b", "bb", "c"), entries.filenames().collect(Collectors.toList()));
+        assertEquals(List.of("b", "bb"), entries.filenames("b").collect(Collectors.toList()));
+        assertEquals(parsed.getOffset(parsed.getIndex("b")), entries.getOffset(entries.getIndex("b")));
+        assertEquals(6, entries.getOffset(entries.getIndex("b")));
+    }
+
+    @Test
+    void whenReadingWithSortedIndex_thenContentMatchesExpectation() throws IOException {
+        Path dataPath = TestHelper.createTempFile("test.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "empty.ffindex");
+
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(IndexType.SORTED).inReadOnlyMode()) {
+            assertEquals(0, fileBundle.fileCount());
+            assertThrows(NoSuchFileException.class, () -> fileBundle.readFile("a"));
+        }
+
+        indexPath = TestHelper.createTempFile("test.ffindex");
+        try (ReadableFileBundle fileBundle = FileBundleIO.openBundle(dataPath, indexPath).withIndexType(IndexType.SORTED).inReadOnlyMode()) {
+            assertEquals("a", Conversions.toString(fileBundle.readFile("a")));
+            assertEquals("bb", Conversions.toString(fileBundle.readFile("b")));
+            assertEquals("cc", Conversions.toString(fileBundle.readFile("c")));
+            assertEquals("fooo\nfooo", Conversions.toString(fileBundle.readFile("foo")));
+        }
+    }
+}
@@ -8,8 +8,10 @@ import org.rcsb.ffindex.TestHelper;
 import org.rcsb.ffindex.WritableFileBundle;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -39,4 +41,30 @@ class WriteOnlyFileBundleTest {
         Files.deleteIfExists(dataPath);
         Files.deleteIfExists(indexPath);
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenFlushing_thenBufferedFilesAreReadable() throws IOException {
+        Path dataPath = Files.createTempFile("file-bundle-test", "flush.data");
+        Path indexPath = Files.createTempFile("file-bundle-test", "flush.ffindex");
+        Files.deleteIfExists(dataPath);
+        Files.deleteIfExists(indexPath);
+
+        byte[] large = new byte[WriteOnlyFileBundle.DATA_BUFFER_SIZE + 17];
+        Arrays.fill(large, (byte) 'x');
+        try (WritableFileBundle writableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inWriteOnlyMode()) {
+            writableFileBundle.writeFile("a", Conversions.toByteBuffer("a"));
+            assertEquals(0, Files.size(indexPath));
+
+            writableFileBundle.writeFile("large", ByteBuffer.wrap(large));
+            writableFileBundle.writeFile("\u00e4", Conversions.toByteBuffer("bb"));
+            writableFileBundle.flush();
+
+            try (ReadableFileBundle readableFileBundle = FileBundleIO.openBundle(dataPath, indexPath).inReadOnlyMode()) {
+                assertEquals(3, readableFileBundle.fileCount());
+                assertArrayEquals(TestHelper.getBytes("data/a"), Conversions.toByteArray(readableFileBundle.readFile("a")));
+                assertArrayEquals(large, Conversions.toByteArray(readableFileBundle.readFile("large")));
+                assertEquals("bb", Conversions.toString(readableFileBundle.readFile("\u00e4")));
+            }
+        }
+    }
+}